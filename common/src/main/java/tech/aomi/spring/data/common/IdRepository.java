@@ -23,4 +23,19 @@ public interface IdRepository {
      */
     Long generateSequence(String sequenceName);
 
+    /**
+     * 根据序列名称批量获取id值
+     *
+     * @param sequenceName 序列名称
+     * @param count        获取的数量
+     * @return 获取到的id值
+     */
+    default long[] generateSequences(String sequenceName, int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = generateSequence(sequenceName);
+        }
+        return values;
+    }
+
 }
@@ -0,0 +1,25 @@
+package tech.aomi.spring.data.common;
+
+/**
+ * 雪花算法节点id租约。
+ * 租约有效期间节点id由当前实例独占, 失效后其他实例可能租用同一个节点id
+ */
+public interface NodeIdLease extends AutoCloseable {
+
+    /**
+     * @return 租用的节点id
+     */
+    long getNodeId();
+
+    /**
+     * @return 租约是否仍然有效
+     */
+    boolean isValid();
+
+    /**
+     * 释放租约, 节点id可以立即被其他实例租用
+     */
+    @Override
+    void close();
+
+}
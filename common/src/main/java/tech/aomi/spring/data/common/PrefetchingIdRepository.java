@@ -0,0 +1,175 @@
+package tech.aomi.spring.data.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预取号段的id仓库。
+ * 当前号段剩余数量低于低水位时，在后台线程异步预留下一个号段，
+ * 只有当前号段和预取号段都用完时请求线程才会等待数据库。
+ */
+public class PrefetchingIdRepository implements IdRepository, InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingIdRepository.class);
+
+    private final IdRepository delegate;
+
+    /**
+     * 每次预留的id数量
+     */
+    private final int blockSize;
+
+    /**
+     * 低水位，当前号段剩余数量达到该值时触发预取
+     */
+    private final int lowWaterMark;
+
+    private final Executor executor;
+
+    /**
+     * 自行创建的线程池，销毁时关闭
+     */
+    private final ExecutorService ownedExecutor;
+
+    private final ConcurrentMap<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    public PrefetchingIdRepository(IdRepository delegate, int blockSize, int lowWaterMark) {
+        this(delegate, blockSize, lowWaterMark, null);
+    }
+
+    /**
+     * @param delegate     实际预留号段的仓库
+     * @param blockSize    每次预留的id数量
+     * @param lowWaterMark 低水位
+     * @param executor     执行预取的线程池, 为null时使用内部的守护线程池.
+     *                     运行在支持虚拟线程的JDK上时可传入 Executors.newVirtualThreadPerTaskExecutor()
+     */
+    public PrefetchingIdRepository(IdRepository delegate, int blockSize, int lowWaterMark, Executor executor) {
+        Assert.notNull(delegate, "delegate 不能为null");
+        Assert.isTrue(blockSize > 0, "blockSize 必须大于0");
+        Assert.isTrue(lowWaterMark >= 0, "lowWaterMark 不能小于0");
+        this.delegate = delegate;
+        this.blockSize = blockSize;
+        this.lowWaterMark = lowWaterMark;
+        if (null == executor) {
+            this.ownedExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "id-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    @Override
+    public void createSequence(String sequenceName) {
+        delegate.createSequence(sequenceName);
+    }
+
+    @Override
+    public Long generateSequence(String sequenceName) {
+        Buffer buffer = buffers.computeIfAbsent(sequenceName, k -> new Buffer());
+        for (; ; ) {
+            Block block = buffer.current;
+            int index = block.cursor.getAndIncrement();
+            if (index < block.values.length) {
+                // 只有一个线程会拿到触发位置
+                if (index == block.prefetchAt) {
+                    prefetch(sequenceName, buffer);
+                }
+                return block.values[index];
+            }
+            swap(sequenceName, buffer, block);
+        }
+    }
+
+    @Override
+    public long[] generateSequences(String sequenceName, int count) {
+        return delegate.generateSequences(sequenceName, count);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (delegate instanceof InitializingBean initializingBean) {
+            initializingBean.afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (null != ownedExecutor) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    private void prefetch(String sequenceName, Buffer buffer) {
+        synchronized (buffer) {
+            if (null == buffer.next) {
+                buffer.next = CompletableFuture.supplyAsync(() -> delegate.generateSequences(sequenceName, blockSize), executor);
+            }
+        }
+    }
+
+    private void swap(String sequenceName, Buffer buffer, Block exhausted) {
+        synchronized (buffer) {
+            if (buffer.current != exhausted) {
+                return;
+            }
+            CompletableFuture<long[]> next = buffer.next;
+            buffer.next = null;
+            long[] values = null;
+            if (null != next) {
+                try {
+                    values = next.join();
+                } catch (CompletionException e) {
+                    LOGGER.warn("序列[{}]预取号段失败,同步重新获取: {}", sequenceName, e.getMessage());
+                }
+            }
+            if (null == values) {
+                values = delegate.generateSequences(sequenceName, blockSize);
+            }
+            buffer.current = new Block(values, Math.max(0, values.length - lowWaterMark));
+        }
+    }
+
+    private static final class Buffer {
+
+        private volatile Block current = Block.EMPTY;
+
+        /**
+         * 正在预取的号段, 由buffer锁保护
+         */
+        private CompletableFuture<long[]> next;
+    }
+
+    private static final class Block {
+
+        private static final Block EMPTY = new Block(new long[0], 0);
+
+        private final long[] values;
+
+        private final int prefetchAt;
+
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        private Block(long[] values, int prefetchAt) {
+            this.values = values;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package tech.aomi.spring.data.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地号段，一次从数据库预留 [start, end] 区间，区间内的值通过原子计数无锁分配。
+ * 计数值 c 对外映射为 c * stride + offset，用于分片序列
+ */
+public class SequenceBlock {
+
+    /**
+     * 号段已用完
+     */
+    public static final long EXHAUSTED = -1L;
+
+    /**
+     * 空号段，首次取值时触发加载
+     */
+    public static final SequenceBlock EMPTY = new SequenceBlock(1, 0);
+
+    private final AtomicLong cursor;
+
+    private final long end;
+
+    private final long stride;
+
+    private final long offset;
+
+    /**
+     * @param start 号段起始值(包含)
+     * @param end   号段结束值(包含)
+     */
+    public SequenceBlock(long start, long end) {
+        this(start, end, 1, 0);
+    }
+
+    /**
+     * @param start  号段起始计数(包含)
+     * @param end    号段结束计数(包含)
+     * @param stride 计数映射步长
+     * @param offset 计数映射偏移
+     */
+    public SequenceBlock(long start, long end, long stride, long offset) {
+        this.cursor = new AtomicLong(start);
+        this.end = end;
+        this.stride = stride;
+        this.offset = offset;
+    }
+
+    /**
+     * 获取下一个值
+     *
+     * @return 下一个值, 号段用完时返回 {@link #EXHAUSTED}
+     */
+    public long next() {
+        long value = cursor.getAndIncrement();
+        return value > end ? EXHAUSTED : value * stride + offset;
+    }
+
+    /**
+     * @return 号段剩余可分配的数量
+     */
+    public long remaining() {
+        return Math.max(0, end - cursor.get() + 1);
+    }
+}
@@ -0,0 +1,170 @@
+package tech.aomi.spring.data.common;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法id仓库, id完全在内存中生成, 不区分序列名称。
+ * <p>
+ * id 结构: 41位毫秒时间戳 | 10位节点id | 12位毫秒内计数
+ * <p>
+ * 节点id可以固定配置, 也可以通过 {@link NodeIdLease} 租用。
+ * 租约失效后不再生成id, 避免与租用了同一节点id的其他实例重复, 销毁时释放租约
+ */
+public class SnowflakeIdRepository implements IdRepository, DisposableBean {
+
+    /**
+     * 起始时间 2020-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1577836800000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    /**
+     * 节点id租约, 固定节点id时为null
+     */
+    private final NodeIdLease lease;
+
+    /**
+     * 允许的最大时钟回拨毫秒数, 回拨范围内继续使用上次的时间戳, 超过则抛出异常
+     */
+    private final long maxBackwardMillis;
+
+    /**
+     * 当前时间的毫秒数
+     */
+    private final LongSupplier clock;
+
+    /**
+     * 上次生成id的状态: 相对时间戳 &lt;&lt; SEQUENCE_BITS | 毫秒内计数
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdRepository(long nodeId) {
+        this(nodeId, 1000);
+    }
+
+    public SnowflakeIdRepository(long nodeId, long maxBackwardMillis) {
+        this(nodeId, maxBackwardMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 返回当前时间的毫秒数, 用于测试时钟回拨等场景
+     */
+    public SnowflakeIdRepository(long nodeId, long maxBackwardMillis, LongSupplier clock) {
+        this(nodeId, maxBackwardMillis, clock, null);
+    }
+
+    /**
+     * 使用租用的节点id
+     *
+     * @param lease 节点id租约
+     */
+    public SnowflakeIdRepository(NodeIdLease lease) {
+        this(lease, 1000);
+    }
+
+    public SnowflakeIdRepository(NodeIdLease lease, long maxBackwardMillis) {
+        this(lease, maxBackwardMillis, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdRepository(NodeIdLease lease, long maxBackwardMillis, LongSupplier clock) {
+        this(leasedNodeId(lease), maxBackwardMillis, clock, lease);
+    }
+
+    private SnowflakeIdRepository(long nodeId, long maxBackwardMillis, LongSupplier clock, NodeIdLease lease) {
+        Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "nodeId 超出范围[0, " + MAX_NODE_ID + "]");
+        Assert.isTrue(maxBackwardMillis >= 0, "maxBackwardMillis 不能小于0");
+        Assert.notNull(clock, "clock 不能为null");
+        this.nodeId = nodeId;
+        this.maxBackwardMillis = maxBackwardMillis;
+        this.clock = clock;
+        this.lease = lease;
+    }
+
+    private static long leasedNodeId(NodeIdLease lease) {
+        Assert.notNull(lease, "lease 不能为null");
+        return lease.getNodeId();
+    }
+
+    @Override
+    public void createSequence(String sequenceName) {
+        // 不依赖数据库序列
+    }
+
+    @Override
+    public Long generateSequence(String sequenceName) {
+        return nextId();
+    }
+
+    @Override
+    public long[] generateSequences(String sequenceName, int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = nextId();
+        }
+        return values;
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() {
+        if (null != lease) {
+            lease.close();
+        }
+    }
+
+    private long nextId() {
+        if (null != lease && !lease.isValid()) {
+            throw new IllegalStateException("节点id " + nodeId + " 的租约已失效");
+        }
+        for (; ; ) {
+            long prev = state.get();
+            long prevTimestamp = prev >>> SEQUENCE_BITS;
+            long prevSequence = prev & SEQUENCE_MASK;
+            long now = clock.getAsLong() - EPOCH;
+
+            long timestamp;
+            long sequence;
+            if (now > prevTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else {
+                if (prevTimestamp - now > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨 " + (prevTimestamp - now) + "ms, 超过允许的最大值 " + maxBackwardMillis + "ms");
+                }
+                if (prevSequence == SEQUENCE_MASK) {
+                    // 当前毫秒计数已用完, 等待时钟超过上次的时间戳; 时钟回拨时需要等待较长时间, 不占用CPU
+                    if (prevTimestamp > now) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(prevTimestamp - now));
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    continue;
+                }
+                timestamp = prevTimestamp;
+                sequence = prevSequence + 1;
+            }
+
+            if (state.compareAndSet(prev, timestamp << SEQUENCE_BITS | sequence)) {
+                return timestamp << (NODE_BITS + SEQUENCE_BITS) | nodeId << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+}
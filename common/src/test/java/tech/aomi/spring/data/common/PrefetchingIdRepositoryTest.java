@@ -0,0 +1,105 @@
+package tech.aomi.spring.data.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefetchingIdRepositoryTest {
+
+    private static final String SEQUENCE = "order";
+
+    @Test
+    void concurrentCallersNeverDuplicate() throws Exception {
+        PrefetchingIdRepository repository = new PrefetchingIdRepository(new CountingIdRepository(), 10, 3);
+        try {
+            Set<Long> values = ConcurrentIds.generate(List.of(repository), SEQUENCE, 16, 2000, 0);
+
+            assertEquals(16 * 2000, values.size());
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    /**
+     * 剩余数量达到低水位时在后台预取, 当前号段用完前下一个号段已经就绪
+     */
+    @Test
+    void prefetchesAtLowWaterMark() throws Exception {
+        CountingIdRepository delegate = new CountingIdRepository();
+        PrefetchingIdRepository repository = new PrefetchingIdRepository(delegate, 10, 3);
+        try {
+            long[] values = new long[20];
+            for (int i = 0; i < 8; i++) {
+                values[i] = repository.generateSequence(SEQUENCE);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (delegate.reserves.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, delegate.reserves.get());
+
+            for (int i = 8; i < 20; i++) {
+                values[i] = repository.generateSequence(SEQUENCE);
+            }
+            assertArrayEquals(LongStream.rangeClosed(1, 20).toArray(), values);
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    /**
+     * 预取失败时同步重新获取号段
+     */
+    @Test
+    void fallsBackWhenPrefetchFails() {
+        CountingIdRepository delegate = new CountingIdRepository();
+        delegate.failAt = 2;
+        PrefetchingIdRepository repository = new PrefetchingIdRepository(delegate, 10, 3, Runnable::run);
+
+        long[] values = new long[20];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = repository.generateSequence(SEQUENCE);
+        }
+
+        assertArrayEquals(LongStream.rangeClosed(1, 20).toArray(), values);
+        // 首次加载、失败的预取、同步重新获取, 以及第二个号段到达低水位时的预取
+        assertEquals(4, delegate.reserves.get());
+    }
+
+    private static final class CountingIdRepository implements IdRepository {
+
+        private final AtomicLong value = new AtomicLong();
+
+        private final AtomicInteger reserves = new AtomicInteger();
+
+        /**
+         * 第几次预留号段时失败, 小于1时不失败
+         */
+        private volatile int failAt;
+
+        @Override
+        public void createSequence(String sequenceName) {
+        }
+
+        @Override
+        public Long generateSequence(String sequenceName) {
+            return value.incrementAndGet();
+        }
+
+        @Override
+        public long[] generateSequences(String sequenceName, int count) {
+            if (reserves.incrementAndGet() == failAt) {
+                throw new IllegalStateException("模拟预留失败");
+            }
+            long end = value.addAndGet(count);
+            return LongStream.rangeClosed(end - count + 1, end).toArray();
+        }
+    }
+}
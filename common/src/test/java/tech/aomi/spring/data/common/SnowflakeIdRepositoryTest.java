@@ -0,0 +1,147 @@
+package tech.aomi.spring.data.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdRepositoryTest {
+
+    @Test
+    void concurrentCallersNeverDuplicate() throws Exception {
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(5);
+
+        Set<Long> values = ConcurrentIds.generate(List.of(repository), "order", 8, 20000, 0);
+
+        assertEquals(8 * 20000, values.size());
+    }
+
+    @Test
+    void idsContainNodeIdAndIncrease() {
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(SnowflakeIdRepository.MAX_NODE_ID);
+        long[] values = repository.generateSequences("order", 10000);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(SnowflakeIdRepository.MAX_NODE_ID, values[i] >>> 12 & SnowflakeIdRepository.MAX_NODE_ID);
+            if (i > 0) {
+                assertTrue(values[i] > values[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    void waitsForNextMillisecondWhenSequenceOverflows() {
+        long start = SnowflakeIdRepository.EPOCH + 1000;
+        AtomicInteger calls = new AtomicInteger();
+        // 前 4096 次返回同一毫秒, 之后进入下一毫秒
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(1, 1000, () -> calls.incrementAndGet() <= 4096 ? start : start + 1);
+
+        long[] values = repository.generateSequences("order", 4097);
+
+        assertEquals(1000, values[4095] >>> 22);
+        assertEquals(4095, values[4095] & 4095);
+        assertEquals(1001, values[4096] >>> 22);
+        assertEquals(0, values[4096] & 4095);
+    }
+
+    @Test
+    void toleratesSmallClockRegression() {
+        AtomicLong now = new AtomicLong(SnowflakeIdRepository.EPOCH + 1000);
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(1, 10, now::get);
+        long first = repository.generateSequence("order");
+
+        now.addAndGet(-5);
+        long second = repository.generateSequence("order");
+
+        assertTrue(second > first);
+        // 回拨范围内继续使用上次的时间戳
+        assertEquals(first >>> 22, second >>> 22);
+    }
+
+    @Test
+    void parksUntilClockCatchesUpWhenSequenceOverflowsDuringRegression() {
+        long start = SnowflakeIdRepository.EPOCH + 1000;
+        AtomicInteger calls = new AtomicInteger();
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(1, 10, () -> {
+            int call = calls.incrementAndGet();
+            return call <= 4096 ? start : call <= 4099 ? start - 5 : start + 1;
+        });
+
+        long begin = System.nanoTime();
+        long[] values = repository.generateSequences("order", 4097);
+
+        assertEquals(1001, values[4096] >>> 22);
+        // 回拨期间每次等待到上次的时间戳, 不是空转
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(4100, calls.get());
+    }
+
+    @Test
+    void rejectsLargeClockRegression() {
+        AtomicLong now = new AtomicLong(SnowflakeIdRepository.EPOCH + 1000);
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(1, 10, now::get);
+        repository.generateSequence("order");
+
+        now.addAndGet(-11);
+        assertThrows(IllegalStateException.class, () -> repository.generateSequence("order"));
+    }
+
+    @Test
+    void stopsWhenLeaseIsLost() {
+        TestLease lease = new TestLease(3);
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(lease);
+        assertEquals(3, repository.getNodeId());
+        assertEquals(3, repository.generateSequence("order") >>> 12 & SnowflakeIdRepository.MAX_NODE_ID);
+
+        lease.valid = false;
+        assertThrows(IllegalStateException.class, () -> repository.generateSequence("order"));
+    }
+
+    @Test
+    void releasesLeaseOnDestroy() {
+        TestLease lease = new TestLease(3);
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(lease);
+        repository.destroy();
+        assertTrue(lease.closed);
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdRepository(SnowflakeIdRepository.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdRepository(new TestLease(-1)));
+    }
+
+    private static final class TestLease implements NodeIdLease {
+
+        private final long nodeId;
+
+        private volatile boolean valid = true;
+
+        private volatile boolean closed;
+
+        private TestLease(long nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public long getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package tech.aomi.spring.data.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发取号的测试工具, 多个线程同时开始取号并检查是否有重复的值
+ */
+public final class ConcurrentIds {
+
+    private ConcurrentIds() {
+    }
+
+    /**
+     * 并发取号
+     *
+     * @param repositories 第 t 个线程使用 repositories.get(t % size), 用于模拟多个实例
+     * @param sequenceName 序列名称
+     * @param threads      线程数
+     * @param rounds       每个线程取号的轮数
+     * @param batchSize    每轮调用一次 generateSequence 后再批量取的数量, 为0时不批量取号
+     * @return 所有取到的值
+     * @throws IllegalStateException 出现重复的值
+     */
+    public static Set<Long> generate(List<? extends IdRepository> repositories, String sequenceName, int threads, int rounds, int batchSize) throws Exception {
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                IdRepository repository = repositories.get(t % repositories.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        add(values, repository.generateSequence(sequenceName));
+                        if (batchSize > 0) {
+                            for (long value : repository.generateSequences(sequenceName, batchSize)) {
+                                add(values, value);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return values;
+    }
+
+    private static void add(Set<Long> values, long value) {
+        if (!values.add(value)) {
+            throw new IllegalStateException("重复的值: " + value);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package tech.aomi.spring.data.jpa.repository;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import tech.aomi.spring.data.common.IdRepository;
+import tech.aomi.spring.data.common.SequenceBlock;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * 基于数据库序列的id仓库。
+ * <p>
+ * 每次访问数据库预留 blockSize 个id, 在本地号段内分配, 实体使用预先分配的id后
+ * {@link EntityRepository#save(Iterable)} 可以使用JDBC批量插入, 不再依赖 IDENTITY 自增列。
+ * <p>
+ * 原生序列模式下每次 nextval 作为号段起点, 数据库序列的 INCREMENT BY 必须等于 blockSize,
+ * 创建序列和首次使用时校验, 不一致时抛出 {@link IllegalStateException};
+ * 序列表模式使用 db_sequence(sequence_name, next_value) 表, 在独立事务中更新,
+ * 建表语句见 {@link #SEQUENCE_TABLE_SCHEMA}, 可配置到 spring.sql.init.schema-locations
+ */
+public class JpaIdRepository implements IdRepository {
+
+    public static final String SEQUENCE_TABLE = "db_sequence";
+
+    /**
+     * 序列表建表语句
+     */
+    public static final String SEQUENCE_TABLE_SCHEMA = "classpath:tech/aomi/spring/data/jpa/db_sequence.sql";
+
+    private static final Pattern SEQUENCE_NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final SequenceDialect dialect;
+
+    private final int blockSize;
+
+    private final ConcurrentMap<String, AtomicReference<SequenceBlock>> blocks = new ConcurrentHashMap<>();
+
+    public JpaIdRepository(EntityManager entityManager, PlatformTransactionManager transactionManager, SequenceDialect dialect, int blockSize) {
+        Assert.notNull(dialect, "dialect 不能为null");
+        Assert.isTrue(blockSize > 0, "blockSize 必须大于0");
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dialect = dialect;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void createSequence(String sequenceName) {
+        checkSequenceName(sequenceName);
+        if (dialect.isTable()) {
+            insertSequenceRow(sequenceName);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                entityManager.createNativeQuery(dialect.createSql(sequenceName, blockSize)).executeUpdate()
+        );
+        // CREATE SEQUENCE IF NOT EXISTS 不会修改已存在序列的 INCREMENT BY
+        checkIncrement(sequenceName);
+    }
+
+    @Override
+    public Long generateSequence(String sequenceName) {
+        AtomicReference<SequenceBlock> holder = blocks.get(sequenceName);
+        if (null == holder) {
+            // 校验需要访问数据库, 不能放在 computeIfAbsent 中阻塞同一分段的其他序列; 并发首次访问时可能重复校验
+            checkSequenceName(sequenceName);
+            if (!dialect.isTable()) {
+                checkIncrement(sequenceName);
+            }
+            holder = blocks.computeIfAbsent(sequenceName, k -> new AtomicReference<>(SequenceBlock.EMPTY));
+        }
+        for (; ; ) {
+            SequenceBlock block = holder.get();
+            long value = block.next();
+            if (value != SequenceBlock.EXHAUSTED) {
+                return value;
+            }
+            synchronized (holder) {
+                if (holder.get() == block) {
+                    holder.set(reserve(sequenceName, blockSize));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long[] generateSequences(String sequenceName, int count) {
+        Assert.isTrue(count > 0, "count 必须大于0");
+        if (!dialect.isTable()) {
+            // 原生序列每次只能预留 INCREMENT BY 个值
+            return IdRepository.super.generateSequences(sequenceName, count);
+        }
+        checkSequenceName(sequenceName);
+        SequenceBlock block = reserve(sequenceName, count);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = block.next();
+        }
+        return values;
+    }
+
+    private SequenceBlock reserve(String sequenceName, int count) {
+        if (dialect.isTable()) {
+            Long end = transactionTemplate.execute(status -> incrementSequenceRow(sequenceName, count));
+            if (null == end) {
+                insertSequenceRow(sequenceName);
+                end = transactionTemplate.execute(status -> incrementSequenceRow(sequenceName, count));
+            }
+            Assert.notNull(end, "序列生成失败: " + sequenceName);
+            return new SequenceBlock(end - count + 1, end);
+        }
+        long start = ((Number) entityManager.createNativeQuery(dialect.nextValueSql(sequenceName)).getSingleResult()).longValue();
+        return new SequenceBlock(start, start + count - 1);
+    }
+
+    /**
+     * 序列表中的值增加count
+     *
+     * @return 增加后的值, 序列不存在时返回null
+     */
+    private Long incrementSequenceRow(String sequenceName, int count) {
+        int updated = entityManager.createNativeQuery("UPDATE " + SEQUENCE_TABLE + " SET next_value = next_value + ?1 WHERE sequence_name = ?2")
+                .setParameter(1, count)
+                .setParameter(2, sequenceName)
+                .executeUpdate();
+        if (updated == 0) {
+            return null;
+        }
+        Object value = entityManager.createNativeQuery("SELECT next_value FROM " + SEQUENCE_TABLE + " WHERE sequence_name = ?1")
+                .setParameter(1, sequenceName)
+                .getSingleResult();
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * 在独立事务中插入序列行, 已存在时忽略, 其他错误(如序列表不存在)向上抛出
+     */
+    private void insertSequenceRow(String sequenceName) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    entityManager.createNativeQuery("INSERT INTO " + SEQUENCE_TABLE + " (sequence_name, next_value) VALUES (?1, 0)")
+                            .setParameter(1, sequenceName)
+                            .executeUpdate()
+            );
+        } catch (PersistenceException | DataAccessException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            // 并发插入, 序列行已存在
+        }
+    }
+
+    /**
+     * 是否违反唯一约束, SQLState 以 23 开头的是完整性约束错误
+     */
+    static boolean isConstraintViolation(Throwable e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return true;
+        }
+        for (Throwable cause = e; null != cause; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                String state = sqlException.getSQLState();
+                return null != state && state.startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 校验原生序列的 INCREMENT BY 等于 blockSize, 否则号段之间会重叠。序列不存在时不校验, 由 nextval 报错
+     */
+    private void checkIncrement(String sequenceName) {
+        List<?> result = entityManager.createNativeQuery(dialect.incrementSql(sequenceName)).getResultList();
+        if (result.isEmpty()) {
+            return;
+        }
+        long incrementBy = ((Number) result.get(0)).longValue();
+        if (incrementBy != blockSize) {
+            throw new IllegalStateException("序列 " + sequenceName + " 的 INCREMENT BY 为 " + incrementBy + ", 与 blockSize " + blockSize
+                    + " 不一致, 请执行 ALTER SEQUENCE " + sequenceName + " INCREMENT BY " + blockSize);
+        }
+    }
+
+    private static void checkSequenceName(String sequenceName) {
+        Assert.isTrue(null != sequenceName && SEQUENCE_NAME_PATTERN.matcher(sequenceName).matches(), "非法的序列名称: " + sequenceName);
+    }
+}
@@ -0,0 +1,58 @@
+package tech.aomi.spring.data.jpa.repository;
+
+/**
+ * 数据库序列方言
+ */
+public enum SequenceDialect {
+
+    POSTGRESQL("SELECT nextval('%s')", "CREATE SEQUENCE IF NOT EXISTS %s START WITH 1 INCREMENT BY %d",
+            "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = lower('%s')"),
+
+    ORACLE("SELECT %s.NEXTVAL FROM DUAL", "CREATE SEQUENCE %s START WITH 1 INCREMENT BY %d",
+            "SELECT INCREMENT_BY FROM USER_SEQUENCES WHERE SEQUENCE_NAME = UPPER('%s')"),
+
+    H2("SELECT NEXT VALUE FOR %s", "CREATE SEQUENCE IF NOT EXISTS %s START WITH 1 INCREMENT BY %d",
+            "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA = SCHEMA() AND SEQUENCE_NAME = UPPER('%s')"),
+
+    SQL_SERVER("SELECT NEXT VALUE FOR %s", "CREATE SEQUENCE %s START WITH 1 INCREMENT BY %d",
+            "SELECT CAST(increment AS BIGINT) FROM sys.sequences WHERE schema_id = SCHEMA_ID() AND name = '%s'"),
+
+    DB2("VALUES NEXT VALUE FOR %s", "CREATE SEQUENCE %s START WITH 1 INCREMENT BY %d",
+            "SELECT INCREMENT FROM SYSCAT.SEQUENCES WHERE SEQSCHEMA = CURRENT SCHEMA AND SEQNAME = UPPER('%s')"),
+
+    /**
+     * 不支持序列的数据库(如MySQL), 使用序列表
+     */
+    TABLE(null, null, null);
+
+    private final String nextValueSql;
+
+    private final String createSql;
+
+    private final String incrementSql;
+
+    SequenceDialect(String nextValueSql, String createSql, String incrementSql) {
+        this.nextValueSql = nextValueSql;
+        this.createSql = createSql;
+        this.incrementSql = incrementSql;
+    }
+
+    public boolean isTable() {
+        return null == nextValueSql;
+    }
+
+    public String nextValueSql(String sequenceName) {
+        return String.format(nextValueSql, sequenceName);
+    }
+
+    public String createSql(String sequenceName, int incrementBy) {
+        return String.format(createSql, sequenceName, incrementBy);
+    }
+
+    /**
+     * 查询序列 INCREMENT BY 的 SQL, 序列不存在时没有结果
+     */
+    public String incrementSql(String sequenceName) {
+        return String.format(incrementSql, sequenceName);
+    }
+}
@@ -0,0 +1,6 @@
+-- JpaIdRepository 序列表模式使用的序列表, sequence_name 的主键约束用于并发首次插入时去重
+CREATE TABLE IF NOT EXISTS db_sequence
+(
+    sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_value    BIGINT      NOT NULL
+);
@@ -0,0 +1,137 @@
+package tech.aomi.spring.data.jpa.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JpaIdRepositoryTest {
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final Query update = query();
+
+    private final Query select = query();
+
+    private final Query insert = query();
+
+    @BeforeEach
+    void setUp() {
+        when(entityManager.createNativeQuery(startsWith("UPDATE db_sequence"))).thenReturn(update);
+        when(entityManager.createNativeQuery(startsWith("SELECT next_value FROM db_sequence"))).thenReturn(select);
+        when(entityManager.createNativeQuery(startsWith("INSERT INTO db_sequence"))).thenReturn(insert);
+    }
+
+    @Test
+    void tableReservesBlocks() {
+        when(update.executeUpdate()).thenReturn(1);
+        when(select.getSingleResult()).thenReturn(3L, 6L);
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.TABLE, 3);
+
+        long[] values = new long[4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = repository.generateSequence("order_no");
+        }
+        assertArrayEquals(new long[]{1, 2, 3, 4}, values);
+        verify(update, times(2)).executeUpdate();
+        verify(insert, never()).executeUpdate();
+    }
+
+    @Test
+    void tableInsertsMissingRow() {
+        when(update.executeUpdate()).thenReturn(0, 1);
+        when(select.getSingleResult()).thenReturn(5L);
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.TABLE, 5);
+
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5}, repository.generateSequences("order_no", 5));
+        verify(insert).executeUpdate();
+    }
+
+    @Test
+    void tableIgnoresConcurrentInsert() {
+        when(update.executeUpdate()).thenReturn(0, 1);
+        when(select.getSingleResult()).thenReturn(2L);
+        when(insert.executeUpdate()).thenThrow(new PersistenceException(new SQLException("duplicate key", "23505")));
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.TABLE, 2);
+
+        assertEquals(1L, repository.generateSequence("order_no"));
+    }
+
+    @Test
+    void tablePropagatesOtherErrors() {
+        when(update.executeUpdate()).thenReturn(0);
+        PersistenceException missingTable = new PersistenceException(new SQLException("table not found", "42P01"));
+        when(insert.executeUpdate()).thenThrow(missingTable);
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.TABLE, 2);
+
+        assertSame(missingTable, assertThrows(PersistenceException.class, () -> repository.generateSequence("order_no")));
+    }
+
+    @Test
+    void recognizesConstraintViolations() {
+        assertTrue(JpaIdRepository.isConstraintViolation(new PersistenceException(new RuntimeException(new SQLException("dup", "23000")))));
+        assertFalse(JpaIdRepository.isConstraintViolation(new PersistenceException(new SQLException("timeout", "HYT00"))));
+        assertFalse(JpaIdRepository.isConstraintViolation(new PersistenceException("no cause")));
+    }
+
+    @Test
+    void nativeSequenceUsesNextValueAsBlockStart() {
+        Query increment = query();
+        when(increment.getResultList()).thenReturn(List.of(10L));
+        when(entityManager.createNativeQuery(SequenceDialect.H2.incrementSql("order_seq"))).thenReturn(increment);
+        Query nextValue = query();
+        when(nextValue.getSingleResult()).thenReturn(1L, 11L);
+        when(entityManager.createNativeQuery(SequenceDialect.H2.nextValueSql("order_seq"))).thenReturn(nextValue);
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.H2, 10);
+
+        for (long i = 1; i <= 11; i++) {
+            assertEquals(i, repository.generateSequence("order_seq"));
+        }
+        // INCREMENT BY 只在首次访问时校验
+        verify(increment).getResultList();
+    }
+
+    @Test
+    void nativeSequenceRejectsMismatchedIncrement() {
+        Query increment = query();
+        when(increment.getResultList()).thenReturn(List.of(1L));
+        when(entityManager.createNativeQuery(SequenceDialect.H2.incrementSql("order_seq"))).thenReturn(increment);
+        JpaIdRepository repository = new JpaIdRepository(entityManager, transactionManager, SequenceDialect.H2, 10);
+
+        assertThrows(IllegalStateException.class, () -> repository.generateSequence("order_seq"));
+        // 校验失败时不缓存号段, 修正序列后可以重新校验
+        when(increment.getResultList()).thenReturn(List.of(10L));
+        Query nextValue = query();
+        when(nextValue.getSingleResult()).thenReturn(1L);
+        when(entityManager.createNativeQuery(SequenceDialect.H2.nextValueSql("order_seq"))).thenReturn(nextValue);
+        assertEquals(1L, repository.generateSequence("order_seq"));
+    }
+
+    private static Query query() {
+        Query query = mock(Query.class);
+        when(query.setParameter(anyInt(), any())).thenReturn(query);
+        return query;
+    }
+}
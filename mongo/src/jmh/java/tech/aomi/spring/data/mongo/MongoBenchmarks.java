@@ -0,0 +1,80 @@
+package tech.aomi.spring.data.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * 基准测试使用的 mongodb, 设置 -Dmongo.uri 时使用已有的实例, 否则使用 testcontainers 启动
+ */
+public final class MongoBenchmarks implements AutoCloseable {
+
+    private final MongoDBContainer container;
+
+    private final MongoClient client;
+
+    private final MongoTemplate mongoTemplate;
+
+    private MongoBenchmarks(MongoDBContainer container, String uri) {
+        this.container = container;
+        this.client = MongoClients.create(uri);
+        this.mongoTemplate = new MongoTemplate(client, "benchmark");
+    }
+
+    public static MongoBenchmarks start() {
+        String uri = System.getProperty("mongo.uri");
+        if (null != uri) {
+            return new MongoBenchmarks(null, uri);
+        }
+        MongoDBContainer container = new MongoDBContainer(DockerImageName.parse("mongo:6.0"));
+        container.start();
+        return new MongoBenchmarks(container, container.getReplicaSetUrl());
+    }
+
+    public MongoTemplate getMongoTemplate() {
+        return mongoTemplate;
+    }
+
+    /**
+     * 输出查询计划的关键指标, 用于对比不同写法是否使用了索引范围扫描
+     *
+     * @param label          说明
+     * @param query          查询条件
+     * @param collectionName 集合名称
+     */
+    public void printPlan(String label, Query query, String collectionName) {
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain", new Document("find", collectionName)
+                .append("filter", query.getQueryObject())
+                .append("sort", query.getSortObject()))
+                .append("verbosity", "executionStats"));
+        Document stats = explain.get("executionStats", Document.class);
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        System.out.printf("%-32s keysExamined=%-8s docsExamined=%-8s returned=%-8s plan=%s%n", label,
+                stats.get("totalKeysExamined"), stats.get("totalDocsExamined"), stats.get("nReturned"), stages(winningPlan));
+    }
+
+    private static String stages(Document plan) {
+        StringBuilder sb = new StringBuilder(plan.getString("stage"));
+        Document input = plan.get("inputStage", Document.class);
+        while (null != input) {
+            sb.append(" <- ").append(input.getString("stage"));
+            if (input.containsKey("indexBounds")) {
+                sb.append(input.get("indexBounds", Document.class).toJson());
+            }
+            input = input.get("inputStage", Document.class);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        if (null != container) {
+            container.stop();
+        }
+    }
+}
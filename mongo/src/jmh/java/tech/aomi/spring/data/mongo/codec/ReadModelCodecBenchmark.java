@@ -0,0 +1,124 @@
+package tech.aomi.spring.data.mongo.codec;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 {@link ReadModelCodec} 和默认读取路径(解码为 Document 后由 MappingMongoConverter 映射)的耗时,
+ * 两种方式都从同样的 BSON 字节开始解码, 不包含网络开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadModelCodecBenchmark {
+
+    @Param({"100"})
+    private int documents;
+
+    private List<byte[]> rows;
+
+    private MappingMongoConverter converter;
+
+    private DocumentCodec documentCodec;
+
+    private ReadModelCodec<Order> codec;
+
+    @Setup
+    public void setup() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        documentCodec = new DocumentCodec();
+        codec = new ReadModelCodecs().codec(Order.class);
+
+        rows = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            Document document = new Document("_id", new ObjectId())
+                    .append("orderNo", "NO" + i)
+                    .append("uid", "user-" + (i % 100))
+                    .append("status", i % 5)
+                    .append("amount", new Decimal128(BigDecimal.valueOf(i * 100L, 2)))
+                    .append("quantity", (long) i)
+                    .append("createAt", new Date())
+                    .append("tags", List.of("a", "b", "c"));
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+            rows.add(buffer.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public List<Order> converter() {
+        List<Order> result = new ArrayList<>(rows.size());
+        for (byte[] row : rows) {
+            Document document = documentCodec.decode(reader(row), DecoderContext.builder().build());
+            result.add(converter.read(Order.class, document));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Order> codec() {
+        List<Order> result = new ArrayList<>(rows.size());
+        for (byte[] row : rows) {
+            result.add(codec.decode(reader(row), DecoderContext.builder().build()));
+        }
+        return result;
+    }
+
+    private static BsonBinaryReader reader(byte[] row) {
+        return new BsonBinaryReader(ByteBuffer.wrap(row));
+    }
+
+    @Getter
+    @Setter
+    @ReadModel
+    public static class Order {
+
+        private String id;
+
+        private String orderNo;
+
+        @Field("uid")
+        private String userId;
+
+        private int status;
+
+        private BigDecimal amount;
+
+        private long quantity;
+
+        private Date createAt;
+
+        private List<String> tags;
+    }
+}
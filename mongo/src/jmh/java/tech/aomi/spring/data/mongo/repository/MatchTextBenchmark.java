@@ -0,0 +1,118 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoBenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比各种文本匹配写法的耗时, 启动时输出每种写法的查询计划。
+ * 只有区分大小写且以 ^ 开头的正则索引边界是前缀区间, 如 ["user-4242", "user-4243"), 其余写法都要扫描整个索引
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchTextBenchmark {
+
+    private static final String COLLECTION = "match_text";
+
+    private static final String VALUE = "user-4242";
+
+    @Param({"100000"})
+    private int documents;
+
+    private MongoBenchmarks mongo;
+
+    private MongoTemplate mongoTemplate;
+
+    private Query startsWith;
+
+    private Query startsWithIgnoreCase;
+
+    private Query rightLike;
+
+    private Query endsWith;
+
+    private Query leftLike;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mongo = MongoBenchmarks.start();
+        mongoTemplate = mongo.getMongoTemplate();
+        mongoTemplate.dropCollection(COLLECTION);
+        List<Document> batch = new ArrayList<>(1000);
+        for (int i = 0; i < documents; i++) {
+            String name = "user-" + i;
+            batch.add(new Document("name", name).append("nameReversed", MatchText.reverse(name)));
+            if (batch.size() == 1000) {
+                mongoTemplate.getCollection(COLLECTION).insertMany(batch);
+                batch = new ArrayList<>(1000);
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.getCollection(COLLECTION).insertMany(batch);
+        }
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index().on("name", Sort.Direction.ASC));
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index().on("nameReversed", Sort.Direction.ASC));
+
+        startsWith = QueryBuilder.builder().startsWith("name", VALUE).build();
+        startsWithIgnoreCase = new Query(Criteria.where("name").regex(MatchText.prefix(VALUE), "i"));
+        rightLike = QueryBuilder.builder().rightLike("name", VALUE).build();
+        endsWith = QueryBuilder.builder().endsWith("nameReversed", "4242").build();
+        leftLike = QueryBuilder.builder().leftLike("name", "4242").build();
+
+        mongo.printPlan("startsWith", startsWith, COLLECTION);
+        mongo.printPlan("startsWith ignore case", startsWithIgnoreCase, COLLECTION);
+        mongo.printPlan("rightLike", rightLike, COLLECTION);
+        mongo.printPlan("endsWith reversed field", endsWith, COLLECTION);
+        mongo.printPlan("leftLike", leftLike, COLLECTION);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.dropCollection(COLLECTION);
+        mongo.close();
+    }
+
+    @Benchmark
+    public List<Document> startsWith() {
+        return mongoTemplate.find(startsWith, Document.class, COLLECTION);
+    }
+
+    @Benchmark
+    public List<Document> startsWithIgnoreCase() {
+        return mongoTemplate.find(startsWithIgnoreCase, Document.class, COLLECTION);
+    }
+
+    @Benchmark
+    public List<Document> rightLike() {
+        return mongoTemplate.find(rightLike, Document.class, COLLECTION);
+    }
+
+    @Benchmark
+    public List<Document> endsWith() {
+        return mongoTemplate.find(endsWith, Document.class, COLLECTION);
+    }
+
+    @Benchmark
+    public List<Document> leftLike() {
+        return mongoTemplate.find(leftLike, Document.class, COLLECTION);
+    }
+}
@@ -0,0 +1,70 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static tech.aomi.spring.data.mongo.repository.QueryBuilder.param;
+
+/**
+ * 对比每次使用 QueryBuilder 构建查询和绑定预编译模板的耗时, 结果都取到最终的查询 Document
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryTemplateBenchmark {
+
+    private static final PageRequest PAGE = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createAt"));
+
+    private QueryTemplate template;
+
+    private int sequence;
+
+    @Setup
+    public void setup() {
+        template = QueryBuilder.builder()
+                .is("tenantId", param("tenantId"))
+                .is("status", param("status"))
+                .in("type", param("types"))
+                .gte("createAt", param("from"))
+                .lt("createAt", param("to"))
+                .page(PAGE)
+                .compile();
+    }
+
+    @Benchmark
+    public Document builder() {
+        int i = sequence++;
+        return QueryBuilder.builder()
+                .is("tenantId", "t" + (i & 15))
+                .is("status", i & 3)
+                .in("type", List.of("A", "B"))
+                .gte("createAt", i)
+                .lt("createAt", i + 1000)
+                .page(PAGE)
+                .build()
+                .getQueryObject();
+    }
+
+    @Benchmark
+    public Document template() {
+        int i = sequence++;
+        return template.bind(
+                "tenantId", "t" + (i & 15),
+                "status", i & 3,
+                "types", List.of("A", "B"),
+                "from", i,
+                "to", i + 1000
+        ).getQueryObject();
+    }
+}
@@ -1,9 +1,15 @@
 package tech.aomi.spring.data.mongo;
 
 import org.bson.types.Decimal128;
+import com.mongodb.ReadPreference;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
@@ -11,32 +17,165 @@ import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.util.StringUtils;
 import tech.aomi.spring.data.common.IdRepository;
+import tech.aomi.spring.data.common.PrefetchingIdRepository;
+import tech.aomi.spring.data.common.SnowflakeIdRepository;
+import tech.aomi.spring.data.mongo.codec.ReadModelCodecs;
+import tech.aomi.spring.data.mongo.metrics.IndexAdvisor;
+import tech.aomi.spring.data.mongo.metrics.MicrometerQueryListener;
+import tech.aomi.spring.data.mongo.metrics.SlowQueryExplainer;
+import tech.aomi.spring.data.mongo.repository.CachingDocumentRepository;
+import tech.aomi.spring.data.mongo.repository.CountStrategy;
 import tech.aomi.spring.data.mongo.repository.DocumentRepository;
 import tech.aomi.spring.data.mongo.repository.DocumentRepositoryImpl;
 import tech.aomi.spring.data.mongo.repository.MongodbIdRepository;
+import tech.aomi.spring.data.mongo.repository.MongodbNodeIdLease;
+import tech.aomi.spring.data.mongo.repository.QueryExecutors;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+import tech.aomi.spring.data.mongo.repository.QueryOptions;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author Sean createAt 2018/7/14
  */
 @Configuration
 @ConditionalOnBean(MongoTemplate.class)
+@EnableConfigurationProperties(MongoDataProperties.class)
 public class MongoAutoConfiguration {
 
     @Bean
     @Autowired
-    public DocumentRepository documentRepository(MongoTemplate mongoTemplate) {
-        return new DocumentRepositoryImpl(mongoTemplate);
+    public DocumentRepository documentRepository(MongoTemplate mongoTemplate, MongoDataProperties properties, ObjectProvider<QueryListener> queryListeners) {
+        MongoDataProperties.Page page = properties.getPage();
+        MongoDataProperties.Executor executor = properties.getExecutor();
+        DocumentRepositoryImpl repository = new DocumentRepositoryImpl(mongoTemplate, QueryExecutors.bounded("document-repository",
+                executor.getCoreSize(), executor.getMaxSize(), executor.getQueueCapacity(), executor.getKeepAlive()));
+        repository.setConcurrentCount(page.isConcurrentCount());
+        repository.setQueryListener(QueryListener.composite(queryListeners.orderedStream().toList()));
+        repository.setLazyCount(page.isLazyCount());
+        repository.setAutoProjection(properties.isAutoProjection());
+        if (properties.getCodec().isEnabled()) {
+            ReadModelCodecs readModelCodecs = new ReadModelCodecs();
+            readModelCodecs.scan(properties.getCodec().getBasePackages().toArray(new String[0]));
+            repository.setReadModelCodecs(readModelCodecs);
+        }
+        Map<String, CountStrategy> countStrategies = new HashMap<>();
+        page.getEstimatedCountCollections().forEach(collectionName -> countStrategies.put(collectionName, CountStrategy.ESTIMATED));
+        page.getCappedCounts().forEach((collectionName, limit) -> countStrategies.put(collectionName, CountStrategy.capped(limit)));
+        repository.setCountStrategies(countStrategies);
+
+        MongoDataProperties.Query query = properties.getQuery();
+        repository.setDefaultQueryOptions(queryOptions(query.getDefaults(), query.getDefaults()));
+        Map<String, QueryOptions> queryOptions = new HashMap<>();
+        query.getCollections().forEach((collectionName, option) -> queryOptions.put(collectionName, queryOptions(option, query.getDefaults())));
+        repository.setQueryOptions(queryOptions);
+
+        MongoDataProperties.Cache cache = properties.getCache();
+        if (cache.getCollections().isEmpty()) {
+            return repository;
+        }
+        CachingDocumentRepository cachingRepository = new CachingDocumentRepository(repository, mongoTemplate);
+        cache.getCollections().forEach((collectionName, ttl) -> cachingRepository.enable(collectionName, cache.getMaxSize(), ttl));
+        if (cache.isWatchChanges()) {
+            cachingRepository.watchChanges();
+        }
+        return cachingRepository;
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public IdRepository mongodbIdRepository() {
-        return new MongodbIdRepository();
+    public IdRepository mongodbIdRepository(MongoTemplate mongoTemplate, MongoDataProperties properties, ObjectProvider<QueryListener> queryListeners) {
+        MongoDataProperties.Id id = properties.getId();
+        if (id.getType() == MongoDataProperties.IdType.SNOWFLAKE) {
+            // 节点id通过 SnowflakeNode 集合租用, 容器关闭时释放
+            return new SnowflakeIdRepository(new MongodbNodeIdLease(mongoTemplate, id.getNodeLeaseTtl()));
+        }
+        MongodbIdRepository repository = new MongodbIdRepository(mongoTemplate, id.getBlockSize());
+        repository.setStripes(id.getStripes());
+        repository.setQueryListener(QueryListener.composite(queryListeners.orderedStream().toList()));
+        MongoDataProperties.Prefetch prefetch = id.getPrefetch();
+        if (!prefetch.isEnabled()) {
+            return repository;
+        }
+        return new PrefetchingIdRepository(repository, prefetch.getBlockSize(), prefetch.getLowWaterMark());
+    }
+
+    /**
+     * 转换查询选项配置, option 中未配置的选项使用 defaults
+     */
+    static QueryOptions queryOptions(MongoDataProperties.QueryOption option, MongoDataProperties.QueryOption defaults) {
+        QueryOptions options = QueryOptions.options();
+        String readPreference = first(option.getReadPreference(), defaults.getReadPreference());
+        if (StringUtils.hasText(readPreference)) {
+            options.readPreference(ReadPreference.valueOf(readPreference), Boolean.TRUE.equals(first(option.getHedged(), defaults.getHedged())));
+        }
+        String countReadPreference = first(option.getCountReadPreference(), defaults.getCountReadPreference());
+        if (StringUtils.hasText(countReadPreference)) {
+            options.countReadPreference(ReadPreference.valueOf(countReadPreference));
+        }
+        Duration maxTime = first(option.getMaxTime(), defaults.getMaxTime());
+        if (null != maxTime) {
+            options.maxTime(maxTime);
+        }
+        Integer batchSize = first(option.getBatchSize(), defaults.getBatchSize());
+        if (null != batchSize) {
+            options.batchSize(batchSize);
+        }
+        String hint = first(option.getHint(), defaults.getHint());
+        if (StringUtils.hasText(hint)) {
+            options.hint(hint);
+        }
+        String collation = first(option.getCollation(), defaults.getCollation());
+        if (StringUtils.hasText(collation)) {
+            options.collation(Collation.of(collation));
+        }
+        return options;
+    }
+
+    private static <T> T first(T value, T defaultValue) {
+        return null != value ? value : defaultValue;
+    }
+
+    @Bean
+    public QueryListener slowQueryExplainer(MongoTemplate mongoTemplate, MongoDataProperties properties) {
+        MongoDataProperties.Metrics metrics = properties.getMetrics();
+        if (null == metrics.getSlowQueryThreshold()) {
+            return QueryListener.NONE;
+        }
+        // explain 只用于诊断, 积压时直接丢弃, 不占用查询线程
+        ThreadPoolExecutor executor = QueryExecutors.bounded("slow-query-explainer", 1, 1, 100, Duration.ofSeconds(60));
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        return new SlowQueryExplainer(mongoTemplate, executor, metrics.getSlowQueryThreshold(), metrics.getExplainInterval());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "aomi.data.mongo.metrics", name = "index-advisor", havingValue = "true")
+    public IndexAdvisor indexAdvisor(MongoTemplate mongoTemplate) {
+        return new IndexAdvisor(mongoTemplate);
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MetricsConfiguration {
+
+        @Bean
+        public QueryListener micrometerQueryListener(ObjectProvider<MeterRegistry> meterRegistry, MongoDataProperties properties) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (null == registry || !properties.getMetrics().isEnabled()) {
+                return QueryListener.NONE;
+            }
+            return new MicrometerQueryListener(registry, properties.getMetrics().getMaxShapes());
+        }
+
     }
 
     @Configuration
@@ -0,0 +1,319 @@
+package tech.aomi.spring.data.mongo;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * mongo 数据模块配置
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "aomi.data.mongo")
+public class MongoDataProperties {
+
+    /**
+     * id 生成配置
+     */
+    private Id id = new Id();
+
+    /**
+     * 查询结果为DTO时根据其属性自动设置返回字段
+     */
+    private boolean autoProjection = true;
+
+    /**
+     * 分页查询配置
+     */
+    private Page page = new Page();
+
+    /**
+     * 查询选项配置
+     */
+    private Query query = new Query();
+
+    /**
+     * 查询结果缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 只读模型解码器配置
+     */
+    private Codec codec = new Codec();
+
+    /**
+     * 响应式仓库配置
+     */
+    private Reactive reactive = new Reactive();
+
+    /**
+     * 查询指标配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 异步查询线程池配置, 并发count、跨集合查询和 BatchLoader 共用
+     */
+    private Executor executor = new Executor();
+
+    public enum IdType {
+        /**
+         * 基于 DBSequence 集合的序列
+         */
+        SEQUENCE,
+        /**
+         * 雪花算法, 节点id通过 SnowflakeNode 集合租用
+         */
+        SNOWFLAKE
+    }
+
+    @Getter
+    @Setter
+    public static class Id {
+
+        /**
+         * id 生成方式
+         */
+        private IdType type = IdType.SEQUENCE;
+
+        /**
+         * 号段大小，大于1时每次从数据库预留一段id在本地分配
+         */
+        private long blockSize = 1;
+
+        /**
+         * 分片序列, key 为序列名称, value 为分片数量。
+         * 适用于只要求唯一不要求递增的高频序列
+         */
+        private Map<String, Integer> stripes = new HashMap<>();
+
+        /**
+         * 后台预取号段配置
+         */
+        private Prefetch prefetch = new Prefetch();
+
+        /**
+         * 雪花算法节点id租约的有效期, 每 1/3 有效期续期一次
+         */
+        private Duration nodeLeaseTtl = Duration.ofSeconds(60);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Prefetch {
+
+        /**
+         * 是否启用后台预取
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每次预取的id数量
+         */
+        private int blockSize = 1000;
+
+        /**
+         * 当前号段剩余数量低于该值时开始预取下一个号段
+         */
+        private int lowWaterMark = 200;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Page {
+
+        /**
+         * count 和数据查询并发执行
+         */
+        private boolean concurrentCount = false;
+
+        /**
+         * 延迟统计总数, 只有读取总数时才执行count
+         */
+        private boolean lazyCount = false;
+
+        /**
+         * 无查询条件时使用 estimatedDocumentCount 统计总数的集合
+         */
+        private Set<String> estimatedCountCollections = new HashSet<>();
+
+        /**
+         * 限制最大统计数量的集合, key 为集合名称, value 为最大统计数量
+         */
+        private Map<String, Integer> cappedCounts = new HashMap<>();
+
+    }
+
+    @Getter
+    @Setter
+    public static class Query {
+
+        /**
+         * 所有集合默认的查询选项
+         */
+        private QueryOption defaults = new QueryOption();
+
+        /**
+         * 按集合配置的查询选项, key 为集合名称, 未配置的选项使用 defaults
+         */
+        private Map<String, QueryOption> collections = new HashMap<>();
+
+    }
+
+    @Getter
+    @Setter
+    public static class QueryOption {
+
+        /**
+         * 读偏好, 如 primary、secondaryPreferred、nearest
+         */
+        private String readPreference;
+
+        /**
+         * 是否开启 hedged read, 读偏好不能为 primary
+         */
+        private Boolean hedged;
+
+        /**
+         * 分页统计总数使用的读偏好
+         */
+        private String countReadPreference;
+
+        /**
+         * 服务端最大执行时间
+         */
+        private Duration maxTime;
+
+        /**
+         * 游标每批返回的数量
+         */
+        private Integer batchSize;
+
+        /**
+         * 索引提示, 索引名称或索引定义的 json
+         */
+        private String hint;
+
+        /**
+         * 排序规则的 locale, 如 zh
+         */
+        private String collation;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Reactive {
+
+        /**
+         * 默认游标批次大小, 小于等于0时根据下游请求数量拉取
+         */
+        private int cursorBatchSize = 0;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Codec {
+
+        /**
+         * 是否启用 ReadModel 解码器, 启用后查询 ReadModel 类型时不经过 MappingMongoConverter
+         */
+        private boolean enabled = false;
+
+        /**
+         * 启动时扫描 ReadModel 并构建解码器的包
+         */
+        private List<String> basePackages = new ArrayList<>();
+
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+
+        /**
+         * 存在 MeterRegistry 时是否记录查询指标
+         */
+        private boolean enabled = true;
+
+        /**
+         * 慢查询阈值, 超过该耗时的查询在后台 explain 并输出执行计划, 为null时不记录
+         */
+        private Duration slowQueryThreshold;
+
+        /**
+         * 同一种查询结构 explain 的最小间隔
+         */
+        private Duration explainInterval = Duration.ofMinutes(1);
+
+        /**
+         * 是否记录查询结构并提供索引建议
+         */
+        private boolean indexAdvisor = false;
+
+        /**
+         * 查询指标最多区分的查询结构数量, 超出后的查询结构记为 other
+         */
+        private int maxShapes = 200;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Executor {
+
+        /**
+         * 核心线程数, 等待队列满之前最多使用的线程数
+         */
+        private int coreSize = 8;
+
+        /**
+         * 最大线程数
+         */
+        private int maxSize = 32;
+
+        /**
+         * 等待队列容量, 队列和线程都满时在调用线程执行
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 空闲线程存活时间
+         */
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /**
+         * 启用缓存的集合, key 为集合名称, value 为缓存存活时间
+         */
+        private Map<String, Duration> collections = new HashMap<>();
+
+        /**
+         * 每个集合最多缓存的查询数量
+         */
+        private int maxSize = 1000;
+
+        /**
+         * 是否监听 change stream 清空缓存, 需要副本集
+         */
+        private boolean watchChanges = false;
+
+    }
+}
@@ -0,0 +1,32 @@
+package tech.aomi.spring.data.mongo;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import tech.aomi.spring.data.mongo.repository.ReactiveDocumentRepository;
+import tech.aomi.spring.data.mongo.repository.ReactiveDocumentRepositoryImpl;
+
+/**
+ * 存在 ReactiveMongoTemplate 时注册响应式文档仓库
+ */
+@Configuration
+@AutoConfigureAfter(name = "org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration")
+@ConditionalOnClass(ReactiveMongoTemplate.class)
+@ConditionalOnBean(ReactiveMongoTemplate.class)
+@EnableConfigurationProperties(MongoDataProperties.class)
+public class ReactiveMongoAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveDocumentRepository reactiveDocumentRepository(ReactiveMongoTemplate reactiveMongoTemplate, MongoDataProperties properties) {
+        ReactiveDocumentRepositoryImpl repository = new ReactiveDocumentRepositoryImpl(reactiveMongoTemplate);
+        repository.setCursorBatchSize(properties.getReactive().getCursorBatchSize());
+        return repository;
+    }
+
+}
@@ -0,0 +1,17 @@
+package tech.aomi.spring.data.mongo.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 只读模型。
+ * 启用 ReadModelCodecs 后, DocumentRepository 查询该类型时直接从 BsonReader 解码, 不经过 MappingMongoConverter
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadModel {
+}
@@ -0,0 +1,340 @@
+package tech.aomi.spring.data.mongo.codec;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.types.ObjectId;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 只读模型解码器。
+ * <p>
+ * 构建时解析类型的字段、字段名和值读取方式并生成 MethodHandle, 解码时直接从 BsonReader 读取赋值,
+ * 不经过 MappingMongoConverter 的反射映射和类型转换。
+ * 字段名规则与 spring data 一致: 支持 {@link org.springframework.data.mongodb.core.mapping.Field}、{@link Id} 和 {@link Transient}。
+ * 支持普通类(需要无参构造器)和 record
+ *
+ * @param <T> 模型类型
+ */
+public class ReadModelCodec<T> implements Codec<T> {
+
+    private static final String ID_FIELD = "_id";
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> type;
+
+    private final ReadModelCodecs codecs;
+
+    /**
+     * key 为文档字段名
+     */
+    private final Map<String, Property> properties = new HashMap<>();
+
+    /**
+     * 普通类为无参构造器, record 为参数展开后的全参构造器
+     */
+    private final MethodHandle constructor;
+
+    private final boolean record;
+
+    /**
+     * record 构造参数默认值, 基本类型不能为null
+     */
+    private final Object[] defaults;
+
+    ReadModelCodec(Class<T> type, ReadModelCodecs codecs) {
+        this.type = type;
+        this.codecs = codecs;
+        this.record = type.isRecord();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            if (record) {
+                RecordComponent[] components = type.getRecordComponents();
+                Class<?>[] parameterTypes = new Class<?>[components.length];
+                this.defaults = new Object[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    RecordComponent component = components[i];
+                    parameterTypes[i] = component.getType();
+                    defaults[i] = defaultValue(component.getType());
+                    Field field = type.getDeclaredField(component.getName());
+                    if (isTransient(field)) {
+                        continue;
+                    }
+                    properties.put(fieldName(field), new Property(i, null, reader(component.getType(), component.getGenericType())));
+                }
+                Constructor<T> canonical = type.getDeclaredConstructor(parameterTypes);
+                canonical.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } else {
+                this.defaults = null;
+                for (Class<?> current = type; null != current && current != Object.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || isTransient(field)) {
+                            continue;
+                        }
+                        field.setAccessible(true);
+                        MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                        properties.putIfAbsent(fieldName(field), new Property(-1, setter, reader(field.getType(), field.getGenericType())));
+                    }
+                }
+                Constructor<T> noArgs = type.getDeclaredConstructor();
+                noArgs.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new CodecConfigurationException("无法构建只读模型解码器: " + type.getName(), e);
+        }
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        try {
+            return record ? decodeRecord(reader) : decodeObject(reader);
+        } catch (BsonInvalidOperationException | CodecConfigurationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CodecConfigurationException("只读模型解码失败: " + type.getName(), e);
+        }
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        throw new UnsupportedOperationException("只读模型不支持写入: " + type.getName());
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decodeObject(BsonReader reader) throws Throwable {
+        Object instance = constructor.invokeExact();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Property property = properties.get(reader.readName());
+            if (null == property) {
+                reader.skipValue();
+                continue;
+            }
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            property.setter.invokeExact(instance, property.reader.read(reader));
+        }
+        reader.readEndDocument();
+        return (T) instance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T decodeRecord(BsonReader reader) throws Throwable {
+        Object[] arguments = defaults.clone();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Property property = properties.get(reader.readName());
+            if (null == property) {
+                reader.skipValue();
+                continue;
+            }
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            arguments[property.index] = property.reader.read(reader);
+        }
+        reader.readEndDocument();
+        return (T) (Object) constructor.invokeExact(arguments);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ValueReader reader(Class<?> valueType, Type genericType) {
+        if (valueType == String.class) {
+            return ReadModelCodec::readString;
+        }
+        if (valueType == int.class || valueType == Integer.class) {
+            return r -> readNumber(r).intValue();
+        }
+        if (valueType == long.class || valueType == Long.class) {
+            return r -> readNumber(r).longValue();
+        }
+        if (valueType == double.class || valueType == Double.class) {
+            return r -> readNumber(r).doubleValue();
+        }
+        if (valueType == float.class || valueType == Float.class) {
+            return r -> readNumber(r).floatValue();
+        }
+        if (valueType == boolean.class || valueType == Boolean.class) {
+            return BsonReader::readBoolean;
+        }
+        if (valueType == BigDecimal.class) {
+            return ReadModelCodec::readBigDecimal;
+        }
+        if (valueType == ObjectId.class) {
+            return BsonReader::readObjectId;
+        }
+        if (valueType == Date.class) {
+            return r -> new Date(r.readDateTime());
+        }
+        if (valueType == Instant.class) {
+            return r -> Instant.ofEpochMilli(r.readDateTime());
+        }
+        if (valueType == LocalDateTime.class) {
+            return r -> LocalDateTime.ofInstant(Instant.ofEpochMilli(r.readDateTime()), ZoneId.systemDefault());
+        }
+        if (valueType == LocalDate.class) {
+            return r -> LocalDateTime.ofInstant(Instant.ofEpochMilli(r.readDateTime()), ZoneId.systemDefault()).toLocalDate();
+        }
+        if (valueType.isEnum()) {
+            return r -> Enum.valueOf((Class) valueType, r.readString());
+        }
+        if (valueType == List.class || valueType == Collection.class || valueType == Set.class) {
+            if (!(genericType instanceof ParameterizedType parameterized)
+                    || !(parameterized.getActualTypeArguments()[0] instanceof Class<?> elementType)) {
+                throw new CodecConfigurationException("集合字段必须声明具体的元素类型: " + genericType);
+            }
+            ValueReader elementReader = reader(elementType, elementType);
+            boolean set = valueType == Set.class;
+            return r -> {
+                Collection<Object> values = set ? new HashSet<>() : new ArrayList<>();
+                r.readStartArray();
+                while (r.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    if (r.getCurrentBsonType() == BsonType.NULL) {
+                        r.readNull();
+                        values.add(null);
+                    } else {
+                        values.add(elementReader.read(r));
+                    }
+                }
+                r.readEndArray();
+                return values;
+            };
+        }
+        if (valueType.isPrimitive() || valueType.isArray() || valueType.isInterface() || Modifier.isAbstract(valueType.getModifiers())) {
+            throw new CodecConfigurationException("只读模型不支持的字段类型: " + valueType.getName());
+        }
+        // 嵌套模型在首次解码时构建解码器, 支持自引用
+        return r -> codecs.codec(valueType).decode(r, DecoderContext.builder().build());
+    }
+
+    private static String readString(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case OBJECT_ID -> reader.readObjectId().toHexString();
+            case SYMBOL -> reader.readSymbol();
+            default -> reader.readString();
+        };
+    }
+
+    private static Number readNumber(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            case DOUBLE -> reader.readDouble();
+            case DECIMAL128 -> reader.readDecimal128().bigDecimalValue();
+            case STRING -> new BigDecimal(reader.readString());
+            default -> throw new BsonInvalidOperationException("无法读取为数字: " + reader.getCurrentBsonType());
+        };
+    }
+
+    private static BigDecimal readBigDecimal(BsonReader reader) {
+        Number number = readNumber(reader);
+        if (number instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (number instanceof Double value) {
+            return BigDecimal.valueOf(value);
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    private static boolean isTransient(Field field) {
+        return AnnotatedElementUtils.hasAnnotation(field, Transient.class);
+    }
+
+    private static String fieldName(Field field) {
+        if (AnnotatedElementUtils.hasAnnotation(field, Id.class) || "id".equals(field.getName())) {
+            return ID_FIELD;
+        }
+        org.springframework.data.mongodb.core.mapping.Field annotation =
+                AnnotatedElementUtils.findMergedAnnotation(field, org.springframework.data.mongodb.core.mapping.Field.class);
+        if (null != annotation && StringUtils.hasText(annotation.value())) {
+            return annotation.value();
+        }
+        return field.getName();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        Object read(BsonReader reader);
+    }
+
+    /**
+     * @param index  record 构造参数下标
+     * @param setter 普通类字段赋值
+     * @param reader 值读取方式
+     */
+    private record Property(int index, MethodHandle setter, ValueReader reader) {
+    }
+}
@@ -0,0 +1,70 @@
+package tech.aomi.spring.data.mongo.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ReadModel} 解码器注册表, 每个类型只构建一次解码器
+ */
+public class ReadModelCodecs {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadModelCodecs.class);
+
+    private final Map<Class<?>, ReadModelCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * 是否使用解码器读取该类型
+     *
+     * @param type 查询结果类型
+     * @return 类型有 {@link ReadModel} 注解时返回true
+     */
+    public boolean supports(Class<?> type) {
+        return AnnotatedElementUtils.hasAnnotation(type, ReadModel.class);
+    }
+
+    /**
+     * 获取类型的解码器, 不存在时构建
+     *
+     * @param type 类型
+     * @param <T>  类型
+     * @return 解码器
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ReadModelCodec<T> codec(Class<T> type) {
+        ReadModelCodec<?> codec = codecs.get(type);
+        if (null == codec) {
+            codec = new ReadModelCodec<>(type, this);
+            ReadModelCodec<?> exists = codecs.putIfAbsent(type, codec);
+            if (null != exists) {
+                codec = exists;
+            }
+        }
+        return (ReadModelCodec<T>) codec;
+    }
+
+    /**
+     * 扫描包下所有 {@link ReadModel} 并预先构建解码器, 类型不支持时启动失败
+     *
+     * @param basePackages 扫描的包
+     */
+    public void scan(String... basePackages) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(ReadModel.class));
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        for (String basePackage : basePackages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                Class<?> type = ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader);
+                codec(type);
+                LOGGER.debug("构建只读模型解码器: {}", type.getName());
+            }
+        }
+    }
+}
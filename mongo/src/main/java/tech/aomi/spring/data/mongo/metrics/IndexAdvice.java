@@ -0,0 +1,34 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import tech.aomi.spring.data.mongo.repository.QueryShape;
+
+import java.util.Map;
+
+/**
+ * 索引建议
+ *
+ * @param collectionName   集合名称
+ * @param shape            查询结构
+ * @param level            问题级别
+ * @param existingIndex    当前可用的最佳索引名称, 没有时为null
+ * @param recommendedIndex 按 ESR 顺序推荐的索引
+ */
+public record IndexAdvice(String collectionName, QueryShape shape, Level level, String existingIndex,
+                          Map<String, Integer> recommendedIndex) {
+
+    public enum Level {
+        /**
+         * 没有可用的索引, 查询会全表扫描
+         */
+        MISSING,
+        /**
+         * 索引只能支持部分条件, 需要在内存中过滤或排序
+         */
+        SUBOPTIMAL
+    }
+
+    @Override
+    public String toString() {
+        return level + " " + collectionName + " " + shape + ", existing=" + existingIndex + ", recommended=" + recommendedIndex;
+    }
+}
@@ -0,0 +1,220 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import tech.aomi.spring.data.mongo.repository.QueryEvent;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+import tech.aomi.spring.data.mongo.repository.QueryShape;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 索引建议。
+ * 记录 DocumentRepository 执行过的查询结构, 与集合现有索引对比,
+ * 按 ESR(等值、排序、范围)规则找出缺少索引或索引不理想的查询。
+ * <p>
+ * 测试中可以在用例结束后调用 {@link #assertIndexed()}, 生产环境可以定时调用 {@link #logReport()}
+ */
+public class IndexAdvisor implements QueryListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final QueryMapper queryMapper;
+
+    /**
+     * 最多记录的查询结构数量, 超过后忽略新的结构
+     */
+    private final int maxShapes;
+
+    private final Map<String, Set<QueryShape>> shapes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger shapeCount = new AtomicInteger();
+
+    public IndexAdvisor(MongoTemplate mongoTemplate) {
+        this(mongoTemplate, 1000);
+    }
+
+    public IndexAdvisor(MongoTemplate mongoTemplate, int maxShapes) {
+        this.mongoTemplate = mongoTemplate;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        // 事件中的查询条件已经映射为文档中的字段名
+        record(event.collectionName(), QueryShape.of(event.query().getQueryObject(), event.query().getSortObject()));
+    }
+
+    /**
+     * 记录一个查询, 可以直接传入 QueryBuilder.build() 的结果, 字段名按文档中的字段名处理
+     *
+     * @param collectionName 集合名称
+     * @param query          查询条件
+     */
+    public void record(String collectionName, Query query) {
+        record(collectionName, query, null);
+    }
+
+    /**
+     * 记录一个查询, 查询条件和排序按实体映射为文档中的字段名
+     *
+     * @param collectionName 集合名称
+     * @param query          查询条件
+     * @param documentClass  文档实体Class, 为null时不按实体映射
+     */
+    public void record(String collectionName, Query query, @Nullable Class<?> documentClass) {
+        MongoPersistentEntity<?> entity = null == documentClass ? null : mongoTemplate.getConverter().getMappingContext().getPersistentEntity(documentClass);
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        Document sort = queryMapper.getMappedSort(query.getSortObject(), entity);
+        record(collectionName, QueryShape.of(filter, sort));
+    }
+
+    private void record(String collectionName, QueryShape shape) {
+        if (shape.isEmpty()) {
+            return;
+        }
+        Set<QueryShape> collectionShapes = shapes.computeIfAbsent(collectionName, k -> ConcurrentHashMap.newKeySet());
+        if (collectionShapes.contains(shape) || shapeCount.get() >= maxShapes) {
+            return;
+        }
+        if (collectionShapes.add(shape)) {
+            shapeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 对比已记录的查询结构和集合现有索引
+     *
+     * @return 索引建议, 所有查询都有合适的索引时为空
+     */
+    public List<IndexAdvice> report() {
+        List<IndexAdvice> advices = new ArrayList<>();
+        shapes.forEach((collectionName, collectionShapes) -> {
+            List<IndexInfo> indexes = mongoTemplate.indexOps(collectionName).getIndexInfo();
+            for (QueryShape shape : collectionShapes) {
+                IndexAdvice advice = advise(collectionName, shape, indexes);
+                if (null != advice) {
+                    advices.add(advice);
+                }
+            }
+        });
+        return advices;
+    }
+
+    /**
+     * 输出索引建议
+     */
+    public void logReport() {
+        List<IndexAdvice> advices = report();
+        advices.forEach(advice -> LOGGER.warn("索引建议: {}", advice));
+        LOGGER.info("索引检查完成, 查询结构: {}, 建议: {}", shapeCount.get(), advices.size());
+    }
+
+    /**
+     * 存在缺少索引的查询时抛出异常, 用于测试
+     */
+    public void assertIndexed() {
+        List<IndexAdvice> missing = report().stream().filter(advice -> advice.level() == IndexAdvice.Level.MISSING).toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("以下查询缺少索引: " + missing);
+        }
+    }
+
+    /**
+     * 清空已记录的查询结构
+     */
+    public void clear() {
+        shapes.clear();
+        shapeCount.set(0);
+    }
+
+    private static IndexAdvice advise(String collectionName, QueryShape shape, List<IndexInfo> indexes) {
+        String best = null;
+        int bestScore = 0;
+        for (IndexInfo index : indexes) {
+            if (index.isSparse() || index.getPartialFilterExpression() != null) {
+                // 稀疏索引和部分索引不一定能用于当前查询
+                continue;
+            }
+            int score = score(shape, index.getIndexFields());
+            if (score < 0) {
+                return null;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = index.getName();
+            }
+        }
+        IndexAdvice.Level level = null == best ? IndexAdvice.Level.MISSING : IndexAdvice.Level.SUBOPTIMAL;
+        return new IndexAdvice(collectionName, shape, level, best, shape.recommendedIndex());
+    }
+
+    /**
+     * 计算索引对查询的支持程度
+     *
+     * @return -1 表示按 ESR 顺序完全支持, 0 表示不可用, 大于0为可用的索引前缀长度
+     */
+    private static int score(QueryShape shape, List<IndexField> fields) {
+        Set<String> equality = new HashSet<>(shape.getEquality());
+        List<Map.Entry<String, Integer>> sort = new ArrayList<>(shape.getSort().entrySet());
+        Set<String> range = new HashSet<>(shape.getRange());
+        // 0: 未确定方向, 1: 正向遍历, -1: 反向遍历
+        int traversal = 0;
+        int sortIndex = 0;
+        int used = 0;
+
+        for (IndexField field : fields) {
+            String key = field.getKey();
+            if (equality.remove(key)) {
+                used++;
+                continue;
+            }
+            if (!equality.isEmpty()) {
+                break;
+            }
+            if (sortIndex < sort.size()) {
+                Map.Entry<String, Integer> order = sort.get(sortIndex);
+                if (!order.getKey().equals(key) || null == field.getDirection()) {
+                    break;
+                }
+                int direction = field.getDirection() == Sort.Direction.ASC ? 1 : -1;
+                int expected = order.getValue() == direction ? 1 : -1;
+                if (traversal != 0 && traversal != expected) {
+                    break;
+                }
+                traversal = expected;
+                sortIndex++;
+                range.remove(key);
+                used++;
+                continue;
+            }
+            if (range.remove(key)) {
+                used++;
+                continue;
+            }
+            break;
+        }
+        if (equality.isEmpty() && sortIndex == sort.size() && range.isEmpty()) {
+            return -1;
+        }
+        return used;
+    }
+}
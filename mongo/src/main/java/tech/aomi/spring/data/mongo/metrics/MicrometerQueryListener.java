@@ -0,0 +1,102 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import tech.aomi.spring.data.mongo.repository.QueryEvent;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用 Micrometer 记录查询指标
+ * <ul>
+ *     <li>aomi.mongo.query: 查询耗时, 按 operation(count/find)、collection、shape 区分</li>
+ *     <li>aomi.mongo.query.documents: 查询返回的文档数量</li>
+ *     <li>aomi.mongo.sequence: 从数据库预留序列的耗时</li>
+ * </ul>
+ * shape 是去掉具体值的查询结构的短哈希, 第一次出现时在日志中输出哈希对应的查询结构。
+ * 最多区分 maxShapes 种查询结构, 超出后记为 {@link #OTHER}, 避免指标数量无限增长
+ */
+public class MicrometerQueryListener implements QueryListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicrometerQueryListener.class);
+
+    public static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+
+    private final int maxShapes;
+
+    /**
+     * key 为集合名称和查询结构, value 为 shape 标签
+     */
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    public MicrometerQueryListener(MeterRegistry registry) {
+        this(registry, 200);
+    }
+
+    public MicrometerQueryListener(MeterRegistry registry, int maxShapes) {
+        Assert.isTrue(maxShapes > 0, "maxShapes 必须大于0");
+        this.registry = registry;
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        String operation = event.operation().name().toLowerCase();
+        String shape = tag(event.collectionName(), event.shape());
+        Timer.builder("aomi.mongo.query")
+                .tag("operation", operation)
+                .tag("collection", event.collectionName())
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(event.nanos(), TimeUnit.NANOSECONDS);
+        if (event.operation() == QueryEvent.Operation.FIND) {
+            DistributionSummary.builder("aomi.mongo.query.documents")
+                    .tag("collection", event.collectionName())
+                    .tag("shape", shape)
+                    .register(registry)
+                    .record(event.documents());
+        }
+    }
+
+    /**
+     * 获取查询结构的标签, 超出数量限制时返回 {@link #OTHER}
+     */
+    private String tag(String collectionName, String shape) {
+        String key = collectionName + ':' + shape;
+        String tag = shapes.get(key);
+        if (null != tag) {
+            return tag;
+        }
+        if (shapes.size() >= maxShapes) {
+            return OTHER;
+        }
+        String hash = DigestUtils.md5DigestAsHex(shape.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+        String exists = shapes.putIfAbsent(key, hash);
+        if (null == exists) {
+            LOGGER.info("查询结构 {} {}: {}", collectionName, hash, shape);
+            return hash;
+        }
+        return exists;
+    }
+
+    @Override
+    public void onSequence(String sequenceName, long count, long nanos) {
+        Timer.builder("aomi.mongo.sequence")
+                .tag("sequence", sequenceName)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,168 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+import tech.aomi.spring.data.mongo.repository.QueryEvent;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 慢查询记录。
+ * 耗时超过阈值的查询在后台执行 explain("executionStats") 并输出执行计划,
+ * 同一种查询结构在 interval 内只 explain 一次
+ */
+public class SlowQueryExplainer implements QueryListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryExplainer.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Executor executor;
+
+    private final long thresholdNanos;
+
+    private final long intervalNanos;
+
+    /**
+     * 最多记录的查询结构数量, 超过后清理过期的记录, 仍然超过时不再 explain 新的查询结构
+     */
+    private static final int MAX_EXPLAINED = 1000;
+
+    /**
+     * key 为 集合名称 + 查询结构, value 为上次 explain 的时间
+     */
+    private final Map<String, Long> explained = new ConcurrentHashMap<>();
+
+    public SlowQueryExplainer(MongoTemplate mongoTemplate, Executor executor, Duration threshold) {
+        this(mongoTemplate, executor, threshold, Duration.ofMinutes(1));
+    }
+
+    public SlowQueryExplainer(MongoTemplate mongoTemplate, Executor executor, Duration threshold, Duration interval) {
+        Assert.isTrue(!threshold.isNegative() && !threshold.isZero(), "threshold 必须大于0");
+        this.mongoTemplate = mongoTemplate;
+        this.executor = executor;
+        this.thresholdNanos = threshold.toNanos();
+        this.intervalNanos = interval.toNanos();
+    }
+
+    @Override
+    public void onQuery(QueryEvent event) {
+        if (event.nanos() < thresholdNanos) {
+            return;
+        }
+        String shape = event.shape();
+        LOGGER.warn("慢查询: {} {} {}ms, documents={}, shape={}", event.operation(), event.collectionName(), event.nanos() / 1_000_000, event.documents(), shape);
+
+        if (!acquire(event.collectionName() + shape, System.nanoTime())) {
+            return;
+        }
+        try {
+            executor.execute(() -> explain(event, shape));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("慢查询 explain 任务被拒绝: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 同一种查询结构在 interval 内只有一个调用方可以 explain
+     */
+    private boolean acquire(String key, long now) {
+        Long last = explained.get(key);
+        if (null != last) {
+            return now - last >= intervalNanos && explained.replace(key, last, now);
+        }
+        if (explained.size() >= MAX_EXPLAINED) {
+            explained.values().removeIf(time -> now - time >= intervalNanos);
+            if (explained.size() >= MAX_EXPLAINED) {
+                return false;
+            }
+        }
+        return null == explained.putIfAbsent(key, now);
+    }
+
+    private void explain(QueryEvent event, String shape) {
+        try {
+            Document result = mongoTemplate.getDb().runCommand(new Document("explain", command(event))
+                    .append("verbosity", "executionStats"));
+            Document stats = result.get("executionStats", new Document());
+            Document planner = result.get("queryPlanner", new Document());
+            String plan = plan(planner.get("winningPlan", new Document()));
+            LOGGER.warn("慢查询执行计划: {} {} plan={}, nReturned={}, totalKeysExamined={}, totalDocsExamined={}, executionTimeMillis={}, shape={}",
+                    event.operation(), event.collectionName(), plan,
+                    stats.get("nReturned"), stats.get("totalKeysExamined"), stats.get("totalDocsExamined"), stats.get("executionTimeMillis"),
+                    shape);
+        } catch (RuntimeException e) {
+            LOGGER.warn("慢查询 explain 失败: {} {}", event.collectionName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 事件中的查询条件已经映射为文档中的字段名, 直接用于 explain
+     */
+    private static Document command(QueryEvent event) {
+        Query query = event.query();
+        Document filter = query.getQueryObject();
+        if (event.operation() == QueryEvent.Operation.COUNT) {
+            Document count = new Document("count", event.collectionName()).append("query", filter);
+            if (query.getLimit() > 0) {
+                count.append("limit", query.getLimit());
+            }
+            return count;
+        }
+        Document find = new Document("find", event.collectionName()).append("filter", filter);
+        Document sort = query.getSortObject();
+        if (!sort.isEmpty()) {
+            find.append("sort", sort);
+        }
+        Document fields = query.getFieldsObject();
+        if (!fields.isEmpty()) {
+            find.append("projection", fields);
+        }
+        if (query.getSkip() > 0) {
+            find.append("skip", query.getSkip());
+        }
+        if (query.getLimit() > 0) {
+            find.append("limit", query.getLimit());
+        }
+        return find;
+    }
+
+    /**
+     * 执行计划各阶段, 如 LIMIT <- FETCH <- IXSCAN
+     */
+    private static String plan(Document stage) {
+        if (stage.get("queryPlan") instanceof Document queryPlan) {
+            // 使用 SBE 引擎时执行计划在 queryPlan 中
+            return plan(queryPlan);
+        }
+        StringBuilder sb = new StringBuilder(String.valueOf(stage.getString("stage")));
+        Object input = stage.get("inputStage");
+        if (input instanceof Document child) {
+            sb.append(" <- ").append(plan(child));
+        }
+        Object inputs = stage.get("inputStages");
+        if (inputs instanceof List<?> children) {
+            sb.append(" <- [");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                if (children.get(i) instanceof Document child) {
+                    sb.append(plan(child));
+                }
+            }
+            sb.append("]");
+        }
+        return sb.toString();
+    }
+}
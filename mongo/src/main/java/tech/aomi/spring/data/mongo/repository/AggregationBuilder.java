@@ -0,0 +1,202 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.BucketOperation;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 聚合查询构建器, $match 阶段可以直接使用 QueryBuilder 的条件
+ */
+public class AggregationBuilder {
+
+    /**
+     * $facet 分页结果中数据的字段名
+     */
+    public static final String ROWS = "rows";
+
+    /**
+     * $facet 分页结果中总数的字段名
+     */
+    public static final String TOTAL = "total";
+
+    private final List<AggregationOperation> operations = new ArrayList<>();
+
+    private boolean allowDiskUse = false;
+
+    private Duration maxTime;
+
+    private AggregationBuilder() {
+    }
+
+    public static AggregationBuilder builder() {
+        return new AggregationBuilder();
+    }
+
+    /**
+     * 使用 QueryBuilder 规整后的条件作为 $match 阶段, 不包含 $text 条件
+     */
+    public AggregationBuilder match(QueryBuilder queryBuilder) {
+        return match(queryBuilder.buildCriteria());
+    }
+
+    public AggregationBuilder match(Criteria criteria) {
+        this.operations.add(Aggregation.match(criteria));
+        return this;
+    }
+
+    /**
+     * 按字段分组, 之后可以调用 {@link #sum(String, String)}、{@link #count(String)} 添加统计字段
+     */
+    public AggregationBuilder group(String... fields) {
+        this.operations.add(Aggregation.group(fields));
+        return this;
+    }
+
+    /**
+     * 按区间分组, 不在区间内的数据归入 defaultBucket。
+     * 之后可以调用 {@link #sum(String, String)}、{@link #count(String)} 添加统计字段
+     *
+     * @param field         分组字段
+     * @param defaultBucket 不在区间内的数据的分组名称, 为null时这些数据会导致查询失败
+     * @param boundaries    区间边界, 升序排列
+     */
+    public AggregationBuilder bucket(String field, Object defaultBucket, Object... boundaries) {
+        BucketOperation bucket = Aggregation.bucket(field).withBoundaries(boundaries);
+        this.operations.add(null == defaultBucket ? bucket : bucket.withDefaultBucket(defaultBucket));
+        return this;
+    }
+
+    /**
+     * 在最近的 group/bucket 阶段中对字段求和
+     *
+     * @param field 求和字段
+     * @param alias 结果字段名
+     */
+    public AggregationBuilder sum(String field, String alias) {
+        AggregationOperation last = last();
+        if (last instanceof GroupOperation group) {
+            replaceLast(group.sum(field).as(alias));
+        } else if (last instanceof BucketOperation bucket) {
+            replaceLast(bucket.andOutput(field).sum().as(alias));
+        } else {
+            throw new IllegalStateException("sum 必须在 group 或 bucket 之后调用");
+        }
+        return this;
+    }
+
+    /**
+     * 在最近的 group/bucket 阶段中统计数量
+     *
+     * @param alias 结果字段名
+     */
+    public AggregationBuilder count(String alias) {
+        AggregationOperation last = last();
+        if (last instanceof GroupOperation group) {
+            replaceLast(group.count().as(alias));
+        } else if (last instanceof BucketOperation bucket) {
+            replaceLast(bucket.andOutputCount().as(alias));
+        } else {
+            throw new IllegalStateException("count 必须在 group 或 bucket 之后调用");
+        }
+        return this;
+    }
+
+    public AggregationBuilder sort(Sort sort) {
+        if (null != sort && sort.isSorted()) {
+            this.operations.add(Aggregation.sort(sort));
+        }
+        return this;
+    }
+
+    public AggregationBuilder project(String... fields) {
+        this.operations.add(Aggregation.project(fields));
+        return this;
+    }
+
+    public AggregationBuilder unwind(String field) {
+        this.operations.add(Aggregation.unwind(field));
+        return this;
+    }
+
+    /**
+     * 添加其它阶段
+     */
+    public AggregationBuilder stage(AggregationOperation operation) {
+        this.operations.add(operation);
+        return this;
+    }
+
+    /**
+     * 允许 $group/$sort 等阶段使用磁盘临时文件, 突破100MB内存限制
+     */
+    public AggregationBuilder allowDiskUse(boolean allowDiskUse) {
+        this.allowDiskUse = allowDiskUse;
+        return this;
+    }
+
+    /**
+     * 服务端最大执行时间, 超时后服务端终止查询
+     */
+    public AggregationBuilder maxTime(Duration maxTime) {
+        this.maxTime = maxTime;
+        return this;
+    }
+
+    public Aggregation build() {
+        return Aggregation.newAggregation(operations).withOptions(options());
+    }
+
+    /**
+     * 构建分页聚合, 通过 $facet 在一次查询中同时返回当前页数据和总数。
+     * 结果只有一条文档: {rows: [...], total: [{total: n}]}
+     *
+     * @param pageable 分页排序信息
+     * @return 聚合查询
+     */
+    public Aggregation buildPage(Pageable pageable) {
+        Assert.notNull(pageable, "pageable 不能为null");
+        List<AggregationOperation> pipeline = new ArrayList<>(operations);
+        if (pageable.getSort().isSorted()) {
+            pipeline.add(Aggregation.sort(pageable.getSort()));
+        }
+        List<AggregationOperation> rows = new ArrayList<>(2);
+        if (pageable.isPaged()) {
+            rows.add(Aggregation.skip(pageable.getOffset()));
+            rows.add(Aggregation.limit(pageable.getPageSize()));
+        } else {
+            // $facet 的子管道不能为空
+            rows.add(Aggregation.skip(0L));
+        }
+        pipeline.add(Aggregation
+                .facet(rows.toArray(new AggregationOperation[0])).as(ROWS)
+                .and(Aggregation.count().as(TOTAL)).as(TOTAL));
+        return Aggregation.newAggregation(pipeline).withOptions(options());
+    }
+
+    private AggregationOptions options() {
+        AggregationOptions.Builder builder = AggregationOptions.builder().allowDiskUse(allowDiskUse);
+        if (null != maxTime) {
+            builder.maxTime(maxTime);
+        }
+        return builder.build();
+    }
+
+    private AggregationOperation last() {
+        Assert.state(!operations.isEmpty(), "没有可以添加统计字段的阶段");
+        return operations.get(operations.size() - 1);
+    }
+
+    private void replaceLast(AggregationOperation operation) {
+        operations.set(operations.size() - 1, operation);
+    }
+}
@@ -0,0 +1,159 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 批量加载器, 合并多次按key查询为分批的 $in 查询。
+ * <p>
+ * 调用 {@link #load(Object)} 只登记key并返回 future, 调用 {@link #dispatch()}
+ * 或等待 window 到期后统一查询。同一个key只查询一次, 结果在加载器内缓存,
+ * 因此加载器应该按请求创建, 不要在请求之间共享
+ *
+ * @param <K> key 类型
+ * @param <T> 数据类型
+ */
+public class BatchLoader<K, T> {
+
+    /**
+     * 批量查询函数, 返回结果按传入的 key 索引
+     */
+    private final Function<List<K>, Map<K, T>> loadFunction;
+
+    /**
+     * 每次 $in 查询的最大key数量
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 第一次 load 之后等待多久自动查询, 为null时只在调用 dispatch 时查询
+     */
+    private final Duration window;
+
+    /**
+     * 执行查询的线程池, 为null时 dispatch 在当前线程查询, window 到期的查询在 {@link QueryExecutors#shared()} 中执行
+     */
+    private final Executor executor;
+
+    private final Map<K, CompletableFuture<T>> futures = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private List<K> pending = new ArrayList<>();
+
+    public BatchLoader(Function<List<K>, Map<K, T>> loadFunction, int maxBatchSize, @Nullable Duration window, @Nullable Executor executor) {
+        Assert.isTrue(maxBatchSize > 0, "maxBatchSize 必须大于0");
+        this.loadFunction = loadFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.window = null == window || window.isZero() || window.isNegative() ? null : window;
+        this.executor = executor;
+    }
+
+    /**
+     * 加载一条数据
+     *
+     * @param key key
+     * @return 查询结果, 数据不存在时为null
+     */
+    public CompletableFuture<T> load(K key) {
+        Assert.notNull(key, "key 不能为null");
+        CompletableFuture<T> future = futures.get(key);
+        if (null != future) {
+            return future;
+        }
+        boolean first = false;
+        synchronized (lock) {
+            future = futures.get(key);
+            if (null != future) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            futures.put(key, future);
+            first = pending.isEmpty();
+            pending.add(key);
+        }
+        if (first && null != window) {
+            Executor target = null == executor ? QueryExecutors.shared() : executor;
+            CompletableFuture.delayedExecutor(window.toMillis(), TimeUnit.MILLISECONDS, target).execute(this::dispatch);
+        }
+        return future;
+    }
+
+    /**
+     * 加载多条数据
+     *
+     * @param keys key列表
+     * @return 查询结果, 按key顺序排列, 不包含不存在的数据
+     */
+    public CompletableFuture<List<T>> loadMany(Collection<K> keys) {
+        List<CompletableFuture<T>> list = new ArrayList<>(keys.size());
+        keys.forEach(key -> list.add(load(key)));
+        return CompletableFuture.allOf(list.toArray(new CompletableFuture[0]))
+                .thenApply(v -> list.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * 立即查询所有已登记的key。
+     * 配置了线程池时异步查询, 否则在当前线程查询
+     */
+    public void dispatch() {
+        List<K> keys;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            keys = pending;
+            pending = new ArrayList<>();
+        }
+        for (int start = 0; start < keys.size(); start += maxBatchSize) {
+            List<K> batch = Collections.unmodifiableList(keys.subList(start, Math.min(keys.size(), start + maxBatchSize)));
+            if (null == executor) {
+                load(batch);
+            } else {
+                executor.execute(() -> load(batch));
+            }
+        }
+    }
+
+    /**
+     * 清空已缓存的结果
+     */
+    public void clear() {
+        futures.entrySet().removeIf(entry -> entry.getValue().isDone());
+    }
+
+    private void load(List<K> batch) {
+        Map<K, T> result;
+        try {
+            result = loadFunction.apply(batch);
+        } catch (RuntimeException e) {
+            for (K key : batch) {
+                // 查询失败的key可以重新加载
+                CompletableFuture<T> future = futures.remove(key);
+                if (null != future) {
+                    future.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        for (K key : batch) {
+            CompletableFuture<T> future = futures.get(key);
+            if (null != future) {
+                future.complete(result.get(key));
+            }
+        }
+    }
+}
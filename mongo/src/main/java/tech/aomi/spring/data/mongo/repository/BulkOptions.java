@@ -0,0 +1,55 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.WriteConcern;
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+/**
+ * 批量写入选项
+ */
+@Getter
+public class BulkOptions {
+
+    /**
+     * 是否按顺序执行, 顺序执行时遇到第一个错误即停止
+     */
+    private boolean ordered = false;
+
+    /**
+     * 单次提交到服务端的最大数量, 超过时自动拆分
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 写关注, 为null时使用 MongoTemplate 的配置。
+     * 指定后直接在集合上执行驱动的批量写入, 不触发实体回调和生命周期事件, updateMulti 只支持 Update
+     */
+    private WriteConcern writeConcern;
+
+    private BulkOptions() {
+    }
+
+    public static BulkOptions unordered() {
+        return new BulkOptions();
+    }
+
+    public static BulkOptions ordered() {
+        return new BulkOptions().ordered(true);
+    }
+
+    public BulkOptions ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public BulkOptions batchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize 必须大于0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public BulkOptions writeConcern(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+        return this;
+    }
+}
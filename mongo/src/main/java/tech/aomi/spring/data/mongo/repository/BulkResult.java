@@ -0,0 +1,63 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写入结果, 汇总所有批次
+ */
+@Getter
+public class BulkResult {
+
+    private int insertedCount;
+
+    private int matchedCount;
+
+    private int modifiedCount;
+
+    private int deletedCount;
+
+    private int upsertedCount;
+
+    /**
+     * 写入失败的数据
+     */
+    private final List<Failure> failures = new ArrayList<>();
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    void add(BulkWriteResult result) {
+        if (null == result || !result.wasAcknowledged()) {
+            return;
+        }
+        this.insertedCount += result.getInsertedCount();
+        this.matchedCount += result.getMatchedCount();
+        this.modifiedCount += result.getModifiedCount();
+        this.deletedCount += result.getDeletedCount();
+        this.upsertedCount += result.getUpserts().size();
+    }
+
+    void addFailure(int index, int code, String message) {
+        this.failures.add(new Failure(index, code, message));
+    }
+
+    /**
+     * 单条数据的写入失败信息
+     *
+     * @param index   数据在请求列表中的下标
+     * @param code    错误码
+     * @param message 错误信息
+     */
+    public record Failure(int index, int code, String message) {
+    }
+}
@@ -0,0 +1,312 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.query.Meta;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 带查询结果缓存的文档仓库, 适用于字典、配置等读多写少的集合。
+ * <p>
+ * 只缓存启用了缓存的集合的 findAll 查询, 缓存键由集合、结果类型、查询条件、返回字段、排序、分页、collation、索引提示、读偏好和查询选项组成。
+ * 通过本仓库写入时清空对应集合的缓存; 开启 change stream 后其他途径的写入也会清空缓存(需要副本集)。
+ * 查询期间缓存被清空时不缓存该次查询的结果。
+ * 返回的列表可以修改, 但列表中的对象在调用方之间共享, 不能修改
+ */
+public class CachingDocumentRepository implements DocumentRepository, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingDocumentRepository.class);
+
+    private final DocumentRepository delegate;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * key 为集合名称
+     */
+    private final Map<String, QueryCache> caches = new ConcurrentHashMap<>();
+
+    private MessageListenerContainer listenerContainer;
+
+    public CachingDocumentRepository(DocumentRepository delegate, MongoTemplate mongoTemplate) {
+        this.delegate = delegate;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * 为集合启用缓存
+     *
+     * @param collectionName 集合名称
+     * @param maxSize        最多缓存的查询数量
+     * @param ttl            缓存存活时间
+     */
+    public void enable(String collectionName, int maxSize, Duration ttl) {
+        Assert.isTrue(maxSize > 0, "maxSize 必须大于0");
+        Assert.notNull(ttl, "ttl 不能为null");
+        caches.put(collectionName, new QueryCache(maxSize, ttl));
+    }
+
+    /**
+     * 清空集合的缓存
+     *
+     * @param collectionName 集合名称
+     */
+    public void invalidate(String collectionName) {
+        QueryCache cache = caches.get(collectionName);
+        if (null != cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 监听所有启用缓存的集合的 change stream, 有写入时清空缓存
+     */
+    public synchronized void watchChanges() {
+        if (null != listenerContainer) {
+            return;
+        }
+        listenerContainer = new DefaultMessageListenerContainer(mongoTemplate);
+        for (String collectionName : caches.keySet()) {
+            ChangeStreamRequest<Document> request = ChangeStreamRequest.<Document>builder(message -> invalidate(collectionName))
+                    .collection(collectionName)
+                    .build();
+            listenerContainer.register(request, Document.class);
+            LOGGER.debug("监听集合变更清空缓存: {}", collectionName);
+        }
+        listenerContainer.start();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (null != listenerContainer) {
+            listenerContainer.stop();
+            listenerContainer = null;
+        }
+    }
+
+    @Override
+    public <T> List<T> findAll(Query query, Class<T> documentClass) {
+        return cached(collectionName(documentClass), key(query, null, null, documentClass), () -> delegate.findAll(query, documentClass));
+    }
+
+    @Override
+    public <T> List<T> findAll(Query query, Sort sort, Class<T> documentClass) {
+        return cached(collectionName(documentClass), key(query, sort, null, documentClass), () -> delegate.findAll(query, sort, documentClass));
+    }
+
+    @Override
+    public <T> List<T> findAll(Query query, Sort sort, Class<T> resultClass, Class<?> documentClass) {
+        return findAll(query, sort, resultClass, collectionName(documentClass));
+    }
+
+    @Override
+    public <T> List<T> findAll(Query query, Sort sort, Class<T> resultClass, String collectionName) {
+        return cached(collectionName, key(query, sort, null, resultClass), () -> delegate.findAll(query, sort, resultClass, collectionName));
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass) {
+        return findAll(query, pageable, documentClass, (CountStrategy) null);
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass, CountStrategy countStrategy) {
+        return cached(collectionName(documentClass), key(query, pageable, countStrategy, documentClass), () -> delegate.findAll(query, pageable, documentClass, countStrategy));
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, Class<?> documentClass) {
+        return findAll(query, pageable, resultClass, collectionName(documentClass));
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName) {
+        return findAll(query, pageable, resultClass, collectionName, null);
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName, CountStrategy countStrategy) {
+        return cached(collectionName, key(query, pageable, countStrategy, resultClass), () -> delegate.findAll(query, pageable, resultClass, collectionName, countStrategy));
+    }
+
+    @Override
+    public <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> documentClass) {
+        return delegate.findAfter(query, sort, token, limit, documentClass);
+    }
+
+    @Override
+    public <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> resultClass, String collectionName) {
+        return delegate.findAfter(query, sort, token, limit, resultClass, collectionName);
+    }
+
+    @Override
+    public <T> Page<T> findAcross(Query query, Pageable pageable, Class<T> resultClass, List<String> collectionNames) {
+        return delegate.findAcross(query, pageable, resultClass, collectionNames);
+    }
+
+    @Override
+    public <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, Class<?> documentClass) {
+        return delegate.aggregatePage(aggregation, pageable, resultClass, documentClass);
+    }
+
+    @Override
+    public <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, String collectionName) {
+        return delegate.aggregatePage(aggregation, pageable, resultClass, collectionName);
+    }
+
+    @Override
+    public <K, T> BatchLoader<K, T> batchLoader(Class<T> documentClass) {
+        return delegate.batchLoader(documentClass);
+    }
+
+    @Override
+    public <K, T> BatchLoader<K, T> batchLoader(Class<T> resultClass, String collectionName, String keyField, int maxBatchSize, Duration window) {
+        return delegate.batchLoader(resultClass, collectionName, keyField, maxBatchSize, window);
+    }
+
+    @Override
+    public <T> Stream<T> stream(Query query, Class<T> documentClass) {
+        return delegate.stream(query, documentClass);
+    }
+
+    @Override
+    public <T> Stream<T> stream(Query query, int batchSize, boolean noCursorTimeout, Class<T> resultClass, String collectionName) {
+        return delegate.stream(query, batchSize, noCursorTimeout, resultClass, collectionName);
+    }
+
+    @Override
+    public <T> void forEachBatch(Query query, int batchSize, Consumer<List<T>> consumer, Class<T> documentClass) {
+        delegate.forEachBatch(query, batchSize, consumer, documentClass);
+    }
+
+    @Override
+    public <T> void forEachBatch(Query query, int batchSize, boolean noCursorTimeout, Consumer<List<T>> consumer, Class<T> resultClass, String collectionName) {
+        delegate.forEachBatch(query, batchSize, noCursorTimeout, consumer, resultClass, collectionName);
+    }
+
+    @Override
+    public BulkResult insertAll(List<?> documents, Class<?> documentClass, BulkOptions options) {
+        return insertAll(documents, documentClass, collectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult insertAll(List<?> documents, Class<?> documentClass, String collectionName, BulkOptions options) {
+        return invalidateAfter(collectionName, () -> delegate.insertAll(documents, documentClass, collectionName, options));
+    }
+
+    @Override
+    public BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, BulkOptions options) {
+        return upsertAll(documents, keyFields, documentClass, collectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, String collectionName, BulkOptions options) {
+        return invalidateAfter(collectionName, () -> delegate.upsertAll(documents, keyFields, documentClass, collectionName, options));
+    }
+
+    @Override
+    public BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, BulkOptions options) {
+        return updateMulti(updates, documentClass, collectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, String collectionName, BulkOptions options) {
+        return invalidateAfter(collectionName, () -> delegate.updateMulti(updates, documentClass, collectionName, options));
+    }
+
+    @Override
+    public BulkResult deleteAll(List<Query> queries, Class<?> documentClass, BulkOptions options) {
+        return deleteAll(queries, documentClass, collectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult deleteAll(List<Query> queries, Class<?> documentClass, String collectionName, BulkOptions options) {
+        return invalidateAfter(collectionName, () -> delegate.deleteAll(queries, documentClass, collectionName, options));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R cached(String collectionName, String key, Supplier<R> loader) {
+        QueryCache cache = caches.get(collectionName);
+        if (null == cache || null == key) {
+            return loader.get();
+        }
+        Object value = cache.get(key);
+        if (null != value) {
+            return (R) copy(value);
+        }
+        // 查询期间有写入时版本会变化, 不缓存可能过期的结果
+        long generation = cache.generation();
+        R result = loader.get();
+        cache.put(key, copy(result), generation);
+        return result;
+    }
+
+    /**
+     * 列表返回副本, 调用方修改列表不影响缓存, 与不使用缓存时一样可以修改; Page 的内容本身不可修改
+     */
+    private static Object copy(Object value) {
+        return value instanceof List<?> list ? new ArrayList<>(list) : value;
+    }
+
+    private BulkResult invalidateAfter(String collectionName, Supplier<BulkResult> write) {
+        try {
+            return write.get();
+        } finally {
+            invalidate(collectionName);
+        }
+    }
+
+    private String collectionName(Class<?> documentClass) {
+        return mongoTemplate.getCollectionName(documentClass);
+    }
+
+    /**
+     * 生成缓存键, 不修改查询对象
+     *
+     * @return 查询条件包含无法序列化的值时返回null, 不缓存
+     */
+    private static String key(Query query, Object sortOrPage, CountStrategy countStrategy, Class<?> resultClass) {
+        try {
+            return doKey(query, sortOrPage, countStrategy, resultClass);
+        } catch (CodecConfigurationException e) {
+            return null;
+        }
+    }
+
+    static String doKey(Query query, Object sortOrPage, CountStrategy countStrategy, Class<?> resultClass) {
+        Meta meta = query.getMeta();
+        return resultClass.getName()
+                + '|' + query.getQueryObject().toJson()
+                + '|' + query.getFieldsObject().toJson()
+                + '|' + query.getSortObject().toJson()
+                + '|' + query.getSkip() + ',' + query.getLimit()
+                + '|' + query.getCollation().map(collation -> collation.toDocument().toJson()).orElse("")
+                + '|' + query.getHint()
+                + '|' + (query.hasReadPreference() ? query.getReadPreference() : "")
+                + '|' + meta.getMaxTimeMsec() + ',' + meta.getCursorBatchSize() + ',' + meta.getAllowDiskUse() + ',' + meta.getComment() + ',' + meta.getFlags()
+                + '|' + sortOrPage
+                + '|' + countStrategy;
+    }
+}
@@ -0,0 +1,54 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.util.Assert;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按时间分区的集合名称
+ */
+public final class CollectionPartitions {
+
+    private CollectionPartitions() {
+    }
+
+    /**
+     * 按月分区的集合名称
+     *
+     * @param pattern 集合名称格式, 如 'order_'yyyyMM
+     * @param from    开始月份(包含)
+     * @param to      结束月份(包含)
+     * @return 集合名称列表, 从新到旧
+     */
+    public static List<String> monthly(String pattern, YearMonth from, YearMonth to) {
+        Assert.isTrue(!from.isAfter(to), "开始月份不能晚于结束月份");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        List<String> names = new ArrayList<>();
+        for (YearMonth month = to; !month.isBefore(from); month = month.minusMonths(1)) {
+            names.add(month.format(formatter));
+        }
+        return names;
+    }
+
+    /**
+     * 按天分区的集合名称
+     *
+     * @param pattern 集合名称格式, 如 'log_'yyyyMMdd
+     * @param from    开始日期(包含)
+     * @param to      结束日期(包含)
+     * @return 集合名称列表, 从新到旧
+     */
+    public static List<String> daily(String pattern, LocalDate from, LocalDate to) {
+        Assert.isTrue(!from.isAfter(to), "开始日期不能晚于结束日期");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        List<String> names = new ArrayList<>();
+        for (LocalDate day = to; !day.isBefore(from); day = day.minusDays(1)) {
+            names.add(day.format(formatter));
+        }
+        return names;
+    }
+}
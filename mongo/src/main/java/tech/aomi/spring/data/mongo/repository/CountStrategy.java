@@ -0,0 +1,90 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * 分页查询统计总数的方式。
+ * 内置的统计方式按值比较, toString 稳定, 可以作为缓存键的一部分; 自定义实现需要缓存时应同样实现 equals、hashCode 和 toString
+ */
+@FunctionalInterface
+public interface CountStrategy {
+
+    /**
+     * 精确统计, countDocuments
+     */
+    CountStrategy EXACT = Standard.EXACT;
+
+    /**
+     * 没有查询条件时使用集合元数据估算总数, 有查询条件时精确统计
+     */
+    CountStrategy ESTIMATED = Standard.ESTIMATED;
+
+    /**
+     * 最多统计到 limit 条。
+     * 实际数量超过 limit 时返回 limit + 1, 调用方可以展示为 "limit+"
+     *
+     * @param limit 最大统计数量
+     * @return 统计方式
+     */
+    static CountStrategy capped(int limit) {
+        return new Capped(limit);
+    }
+
+    /**
+     * 统计总数
+     *
+     * @param mongoTemplate  mongoTemplate
+     * @param query          查询条件, 不包含分页信息。设置了读偏好时在对应的节点统计
+     * @param documentClass  文档实体Class, 可能为null
+     * @param collectionName 集合名称
+     * @return 总数
+     */
+    long count(MongoTemplate mongoTemplate, Query query, @Nullable Class<?> documentClass, String collectionName);
+
+    /**
+     * 内置的统计方式
+     */
+    enum Standard implements CountStrategy {
+
+        EXACT {
+            @Override
+            public long count(MongoTemplate mongoTemplate, Query query, @Nullable Class<?> documentClass, String collectionName) {
+                return mongoTemplate.count(query, documentClass, collectionName);
+            }
+        },
+
+        ESTIMATED {
+            @Override
+            public long count(MongoTemplate mongoTemplate, Query query, @Nullable Class<?> documentClass, String collectionName) {
+                if (!query.getQueryObject().isEmpty()) {
+                    return mongoTemplate.count(query, documentClass, collectionName);
+                }
+                return mongoTemplate.execute(collectionName, collection -> (query.hasReadPreference() ? collection.withReadPreference(query.getReadPreference()) : collection).estimatedDocumentCount());
+            }
+        }
+    }
+
+    /**
+     * 最多统计到 limit 条的统计方式
+     *
+     * @param limit 最大统计数量
+     */
+    record Capped(int limit) implements CountStrategy {
+
+        public Capped {
+            Assert.isTrue(limit > 0, "limit 必须大于0");
+        }
+
+        @Override
+        public long count(MongoTemplate mongoTemplate, Query query, @Nullable Class<?> documentClass, String collectionName) {
+            Query capped = Query.of(query).skip(0).limit(limit + 1);
+            if (query.hasReadPreference()) {
+                capped.withReadPreference(query.getReadPreference());
+            }
+            return mongoTemplate.count(capped, documentClass, collectionName);
+        }
+    }
+}
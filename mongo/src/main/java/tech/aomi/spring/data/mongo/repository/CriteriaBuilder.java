@@ -1,6 +1,7 @@
 package tech.aomi.spring.data.mongo.repository;
 
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
 
 import java.util.Collection;
 
@@ -35,10 +36,36 @@ public class CriteriaBuilder {
         return regex(key, ".*" + value);
     }
 
+    /**
+     * 正则没有 ^ 锚点也不转义, 不能使用索引, 前缀匹配使用 {@link #startsWith(String, String)}
+     */
     public Criteria rightLike(String key, String value) {
         return regex(key, value + ".*");
     }
 
+    /**
+     * 前缀匹配, 转义正则元字符并以 ^ 开头, 可以使用索引范围扫描
+     */
+    public Criteria startsWith(String key, String value) {
+        return regex(key, MatchText.prefix(value));
+    }
+
+    /**
+     * 后缀匹配, 在反向字段上做前缀匹配, 反向字段使用 {@link MatchText#reverse(String)} 维护
+     */
+    public Criteria endsWith(String reversedKey, String value) {
+        return startsWith(reversedKey, MatchText.reverse(value));
+    }
+
+    /**
+     * 包含匹配, 要求 n-gram 字段包含搜索内容的所有片段, n-gram 字段使用 {@link MatchText#ngrams(String, int)} 维护。
+     * 结果可能包含片段顺序不同的数据, 需要精确匹配时再加上 like 条件
+     */
+    public Criteria containsNgram(String ngramKey, String value, int n) {
+        Assert.isTrue(null != value && value.length() >= n, "搜索内容长度不能小于 " + n);
+        return Criteria.where(ngramKey).all(MatchText.ngrams(value, n));
+    }
+
     public Criteria elemMatch(String k, Criteria c) {
         return new Criteria(k).elemMatch(c);
     }
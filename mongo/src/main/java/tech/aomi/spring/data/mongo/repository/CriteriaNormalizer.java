@@ -0,0 +1,623 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 查询条件规整。
+ * <ul>
+ *     <li>展开嵌套的 $and, 合并嵌套的 $or, 只有一个分支的 $or 直接展开</li>
+ *     <li>同一字段的范围条件合并为一个, 保留更严格的边界</li>
+ *     <li>只有一个值的 $in 转为等值, 多个 $ne/$nin 合并为一个 $nin</li>
+ *     <li>去掉重复的等值条件</li>
+ *     <li>发现互相矛盾的条件时返回null</li>
+ * </ul>
+ * 数组字段可以同时满足 a=1 和 a=2, 因此多个不同的等值、上下界交错只在标量字段上视为矛盾,
+ * _id 总是标量字段。包含占位符的条件不做处理。
+ * <p>
+ * 条件值在 QueryMapper 转换之前比较, 只有转换后顺序不变的同类值才合并边界或判断矛盾, 参考 {@link Values#comparable}。
+ * 其他情况(如 String 和 ObjectId、Instant 和 LocalDateTime、枚举和 String)保留原条件, 由服务端判断
+ */
+final class CriteriaNormalizer {
+
+    private static final String ID_FIELD = "_id";
+
+    private CriteriaNormalizer() {
+    }
+
+    /**
+     * 规整查询条件
+     *
+     * @param clauses      AND 连接的条件
+     * @param scalarFields 标量字段
+     * @param simpleCollation 查询是否显式使用 simple 排序规则, 否则不比较字符串
+     * @return 规整后的条件, 条件互相矛盾时返回null
+     */
+    static Document normalize(List<Document> clauses, Set<String> scalarFields, boolean simpleCollation) {
+        Group group = new Group(scalarFields, new Values(simpleCollation));
+        clauses.forEach(group::add);
+        return group.build();
+    }
+
+    /**
+     * 把规整后的条件转换为 Criteria
+     */
+    static Criteria toCriteria(Document filter) {
+        List<Criteria> list = new ArrayList<>(filter.size());
+        filter.forEach((key, value) -> {
+            if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && value instanceof List<?> branches
+                    && branches.stream().allMatch(Document.class::isInstance)) {
+                List<Criteria> children = new ArrayList<>(branches.size());
+                branches.forEach(branch -> children.add(toCriteria((Document) branch)));
+                Criteria criteria = new Criteria();
+                switch (key) {
+                    case "$and" -> criteria.andOperator(children);
+                    case "$or" -> criteria.orOperator(children);
+                    default -> criteria.norOperator(children);
+                }
+                list.add(criteria);
+            } else {
+                list.add(Criteria.where(key).is(value));
+            }
+        });
+        return list.size() == 1 ? list.get(0) : new Criteria().andOperator(list);
+    }
+
+    /**
+     * 把规整后的条件转换为顶层的 Criteria, 每个字段一个, $and/$or/$nor 合并为一个没有 key 的 Criteria,
+     * 与直接使用 {@link org.springframework.data.mongodb.core.query.Query#addCriteria} 时的 key 相同,
+     * 之后再添加同一字段或逻辑运算符的条件时 Query 仍然会抛出异常
+     */
+    static List<Criteria> toTopLevelCriteria(Document filter) {
+        List<Criteria> list = new ArrayList<>(filter.size());
+        Criteria logical = null;
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && value instanceof List<?> branches
+                    && branches.stream().allMatch(Document.class::isInstance)) {
+                List<Criteria> children = new ArrayList<>(branches.size());
+                branches.forEach(branch -> children.add(toCriteria((Document) branch)));
+                if (null == logical) {
+                    logical = new Criteria();
+                }
+                switch (key) {
+                    case "$and" -> logical.andOperator(children);
+                    case "$or" -> logical.orOperator(children);
+                    default -> logical.norOperator(children);
+                }
+            } else {
+                list.add(Criteria.where(key).is(value));
+            }
+        }
+        if (null != logical) {
+            list.add(logical);
+        }
+        return list;
+    }
+
+    private static boolean containsParam(Object value) {
+        if (value instanceof QueryTemplate.Param) {
+            return true;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.values().stream().anyMatch(CriteriaNormalizer::containsParam);
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().anyMatch(CriteriaNormalizer::containsParam);
+        }
+        return false;
+    }
+
+    private static boolean isOperator(Object value) {
+        return value instanceof Document document && !document.isEmpty() && document.keySet().iterator().next().startsWith("$");
+    }
+
+    /**
+     * 在客户端比较条件值的规则
+     *
+     * @param simpleCollation 是否使用 simple 排序规则
+     */
+    private record Values(boolean simpleCollation) {
+
+        /**
+         * 转换为 BSON 后顺序不变的类型。
+         * LocalDateTime 按系统时区转换, 夏令时跳变时顺序可能改变, 不在其中
+         */
+        private static final Set<Class<?>> ORDERED_TYPES = Set.of(Date.class, Instant.class, LocalDate.class, ObjectId.class, Boolean.class);
+
+        /**
+         * 两个值能否在客户端比较大小。
+         * 数值之间按数值比较, 不包括默认转换为字符串的 BigInteger/BigDecimal;
+         * 字符串只在 simple 排序规则下按码点比较, 未设置排序规则时可能使用集合的默认排序规则;
+         * 其他类型只比较 {@link #ORDERED_TYPES} 中的同类值
+         */
+        boolean comparable(Object a, Object b) {
+            if (null == a || null == b) {
+                return false;
+            }
+            if (isNumber(a) && isNumber(b)) {
+                return true;
+            }
+            if (a instanceof String && b instanceof String) {
+                return simpleCollation;
+            }
+            return a.getClass() == b.getClass() && ORDERED_TYPES.contains(a.getClass());
+        }
+
+        /**
+         * 比较两个 {@link #comparable} 的值
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int compare(Object a, Object b) {
+            if (isNumber(a)) {
+                return SortedMerge.compareValues(a, b);
+            }
+            if (a instanceof String sa) {
+                return compareCodePoints(sa, (String) b);
+            }
+            return ((Comparable) a).compareTo(b);
+        }
+
+        /**
+         * @return 两个值在服务端一定相等
+         */
+        boolean same(Object a, Object b) {
+            if (isNumber(a) && isNumber(b)) {
+                return SortedMerge.compareValues(a, b) == 0;
+            }
+            return Objects.equals(a, b);
+        }
+
+        /**
+         * @return 两个值在服务端一定不相等
+         */
+        boolean distinct(Object a, Object b) {
+            return comparable(a, b) && compare(a, b) != 0;
+        }
+
+        boolean containsSame(Collection<?> values, Object value) {
+            for (Object item : values) {
+                if (same(item, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isNumber(Object value) {
+            return value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Decimal128
+                    || value instanceof Short || value instanceof Byte || value instanceof Float;
+        }
+
+        /**
+         * simple 排序规则按 UTF-8 字节比较, 与按码点比较的顺序相同
+         */
+        private static int compareCodePoints(String a, String b) {
+            int i = 0;
+            int j = 0;
+            while (i < a.length() && j < b.length()) {
+                int ca = a.codePointAt(i);
+                int cb = b.codePointAt(j);
+                if (ca != cb) {
+                    return Integer.compare(ca, cb);
+                }
+                i += Character.charCount(ca);
+                j += Character.charCount(cb);
+            }
+            return Integer.compare(a.length() - i, b.length() - j);
+        }
+    }
+
+    /**
+     * AND 连接的一组条件
+     */
+    private static final class Group {
+
+        private final Set<String> scalarFields;
+
+        private final Values values;
+
+        private final Map<String, FieldConstraint> fields = new LinkedHashMap<>();
+
+        private final List<Document> ors = new ArrayList<>();
+
+        private final List<Document> others = new ArrayList<>();
+
+        private boolean unsatisfiable;
+
+        private Group(Set<String> scalarFields, Values values) {
+            this.scalarFields = scalarFields;
+            this.values = values;
+        }
+
+        private void add(Document clause) {
+            clause.forEach((key, value) -> {
+                if ("$and".equals(key) && value instanceof List<?> list && list.stream().allMatch(Document.class::isInstance)) {
+                    list.forEach(item -> add((Document) item));
+                } else if ("$or".equals(key) && value instanceof List<?> list && list.stream().allMatch(Document.class::isInstance) && !containsParam(list)) {
+                    addOr(list);
+                } else if (key.startsWith("$")) {
+                    Document other = new Document(key, value);
+                    if (!others.contains(other)) {
+                        others.add(other);
+                    }
+                } else {
+                    fields.computeIfAbsent(key, k -> new FieldConstraint(k, ID_FIELD.equals(k) || scalarFields.contains(k), values)).add(value);
+                }
+            });
+        }
+
+        private void addOr(List<?> branches) {
+            List<Document> normalized = new ArrayList<>(branches.size());
+            for (Object branch : branches) {
+                Document filter = normalize(List.of((Document) branch), scalarFields, values.simpleCollation());
+                if (null == filter) {
+                    // 矛盾的分支不会匹配任何数据
+                    continue;
+                }
+                if (filter.isEmpty()) {
+                    // 空分支匹配所有数据, 整个 $or 恒为真
+                    return;
+                }
+                if (filter.size() == 1 && filter.get("$or") instanceof List<?> inner) {
+                    inner.forEach(item -> addDistinct(normalized, (Document) item));
+                } else {
+                    addDistinct(normalized, filter);
+                }
+            }
+            if (normalized.isEmpty()) {
+                unsatisfiable = true;
+            } else if (normalized.size() == 1) {
+                add(normalized.get(0));
+            } else {
+                Document or = new Document("$or", normalized);
+                if (!ors.contains(or)) {
+                    ors.add(or);
+                }
+            }
+        }
+
+        private static void addDistinct(List<Document> list, Document document) {
+            if (!list.contains(document)) {
+                list.add(document);
+            }
+        }
+
+        private Document build() {
+            if (unsatisfiable) {
+                return null;
+            }
+            Document result = new Document();
+            List<Document> and = new ArrayList<>();
+            for (FieldConstraint constraint : fields.values()) {
+                List<Object> clauses = constraint.build();
+                if (null == clauses) {
+                    return null;
+                }
+                if (clauses.isEmpty()) {
+                    continue;
+                }
+                result.put(constraint.field, clauses.get(0));
+                for (int i = 1; i < clauses.size(); i++) {
+                    and.add(new Document(constraint.field, clauses.get(i)));
+                }
+            }
+            List<Document> operators = new ArrayList<>(ors);
+            operators.addAll(others);
+            for (Document operator : operators) {
+                String key = operator.keySet().iterator().next();
+                if (result.containsKey(key)) {
+                    and.add(operator);
+                } else {
+                    result.put(key, operator.get(key));
+                }
+            }
+            if (!and.isEmpty()) {
+                if (result.containsKey("$and")) {
+                    and.add(0, new Document("$and", result.get("$and")));
+                }
+                result.put("$and", and);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 单个字段上的条件
+     */
+    private static final class FieldConstraint {
+
+        private final String field;
+
+        private final boolean scalar;
+
+        private final Values values;
+
+        private final List<Object> equals = new ArrayList<>();
+
+        private Object lower;
+
+        private boolean lowerInclusive;
+
+        private Object upper;
+
+        private boolean upperInclusive;
+
+        private Boolean exists;
+
+        private final List<Object> notIn = new ArrayList<>();
+
+        private final List<Document> operators = new ArrayList<>();
+
+        private final List<Object> raw = new ArrayList<>();
+
+        private boolean unsatisfiable;
+
+        private FieldConstraint(String field, boolean scalar, Values values) {
+            this.field = field;
+            this.scalar = scalar;
+            this.values = values;
+        }
+
+        private void add(Object value) {
+            if (containsParam(value) || value instanceof Pattern) {
+                addRaw(value);
+                return;
+            }
+            if (!isOperator(value)) {
+                addEquals(value);
+                return;
+            }
+            Document remainder = new Document();
+            ((Document) value).forEach((op, operand) -> {
+                if (!merge(op, operand)) {
+                    remainder.put(op, operand);
+                }
+            });
+            if (!remainder.isEmpty() && !operators.contains(remainder)) {
+                operators.add(remainder);
+            }
+        }
+
+        private void addRaw(Object value) {
+            if (!raw.contains(value)) {
+                raw.add(value);
+            }
+        }
+
+        private boolean merge(String op, Object operand) {
+            switch (op) {
+                case "$eq" -> {
+                    if (operand instanceof Pattern) {
+                        return false;
+                    }
+                    addEquals(operand);
+                    return true;
+                }
+                case "$in" -> {
+                    if (!(operand instanceof Collection<?> items)) {
+                        return false;
+                    }
+                    if (items.isEmpty()) {
+                        unsatisfiable = true;
+                        return true;
+                    }
+                    Object first = items.iterator().next();
+                    if (items.size() == 1 && !(first instanceof Pattern)) {
+                        addEquals(first);
+                        return true;
+                    }
+                    return false;
+                }
+                case "$gt", "$gte" -> {
+                    return addLower(operand, "$gte".equals(op));
+                }
+                case "$lt", "$lte" -> {
+                    return addUpper(operand, "$lte".equals(op));
+                }
+                case "$exists" -> {
+                    boolean value = !Boolean.FALSE.equals(operand) && !(operand instanceof Number number && number.intValue() == 0);
+                    if (null != exists && exists != value) {
+                        unsatisfiable = true;
+                    }
+                    exists = value;
+                    return true;
+                }
+                case "$ne" -> {
+                    if (operand instanceof Pattern) {
+                        return false;
+                    }
+                    if (!values.containsSame(notIn, operand)) {
+                        notIn.add(operand);
+                    }
+                    return true;
+                }
+                case "$nin" -> {
+                    if (!(operand instanceof Collection<?> items) || items.stream().anyMatch(Pattern.class::isInstance)) {
+                        return false;
+                    }
+                    items.forEach(item -> {
+                        if (!values.containsSame(notIn, item)) {
+                            notIn.add(item);
+                        }
+                    });
+                    return true;
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+
+        private void addEquals(Object value) {
+            if (!values.containsSame(equals, value)) {
+                equals.add(value);
+            }
+        }
+
+        private boolean addLower(Object value, boolean inclusive) {
+            if (null == value) {
+                return false;
+            }
+            if (null == lower) {
+                lower = value;
+                lowerInclusive = inclusive;
+                return true;
+            }
+            if (!values.comparable(lower, value)) {
+                return false;
+            }
+            int c = values.compare(value, lower);
+            if (c > 0 || c == 0 && !inclusive) {
+                lower = value;
+                lowerInclusive = inclusive;
+            }
+            return true;
+        }
+
+        private boolean addUpper(Object value, boolean inclusive) {
+            if (null == value) {
+                return false;
+            }
+            if (null == upper) {
+                upper = value;
+                upperInclusive = inclusive;
+                return true;
+            }
+            if (!values.comparable(upper, value)) {
+                return false;
+            }
+            int c = values.compare(value, upper);
+            if (c < 0 || c == 0 && !inclusive) {
+                upper = value;
+                upperInclusive = inclusive;
+            }
+            return true;
+        }
+
+        /**
+         * @return 字段的条件, 第一个放在顶层, 其余放在 $and 中; 条件矛盾时返回null
+         */
+        private List<Object> build() {
+            if (unsatisfiable || isContradiction()) {
+                return null;
+            }
+            if (scalar && equals.size() == 1 && satisfiesBounds(equals.get(0))) {
+                // 等值条件已经满足范围条件
+                lower = null;
+                upper = null;
+            }
+
+            Document ops = new Document();
+            if (null != lower) {
+                ops.put(lowerInclusive ? "$gte" : "$gt", lower);
+            }
+            if (null != upper) {
+                ops.put(upperInclusive ? "$lte" : "$lt", upper);
+            }
+            if (null != exists && !(exists && equals.stream().anyMatch(Objects::nonNull))) {
+                // 非null的等值条件已经隐含字段存在
+                ops.put("$exists", exists);
+            }
+            if (!notIn.isEmpty()) {
+                if (notIn.size() == 1) {
+                    ops.put("$ne", notIn.get(0));
+                } else {
+                    ops.put("$nin", notIn);
+                }
+            }
+
+            List<Object> result = new ArrayList<>();
+            List<Object> extraEquals = equals;
+            if (!equals.isEmpty()) {
+                if (ops.isEmpty()) {
+                    result.add(equals.get(0));
+                } else {
+                    Document withEq = new Document("$eq", equals.get(0));
+                    withEq.putAll(ops);
+                    result.add(withEq);
+                }
+                extraEquals = equals.subList(1, equals.size());
+            } else if (!ops.isEmpty()) {
+                result.add(ops);
+            }
+            result.addAll(extraEquals);
+            for (Document operator : operators) {
+                Object first = result.isEmpty() ? null : result.get(0);
+                if (first instanceof Document primary && isOperator(primary) && operator.keySet().stream().noneMatch(primary::containsKey)) {
+                    primary.putAll(operator);
+                } else {
+                    result.add(operator);
+                }
+            }
+            result.addAll(raw);
+            return result;
+        }
+
+        private boolean isContradiction() {
+            if (Boolean.FALSE.equals(exists) && (null != lower || null != upper || equals.stream().anyMatch(Objects::nonNull))) {
+                return true;
+            }
+            for (Object value : equals) {
+                if (values.containsSame(notIn, value)) {
+                    return true;
+                }
+            }
+            if (!scalar) {
+                return false;
+            }
+            for (int i = 0; i < equals.size(); i++) {
+                for (int j = i + 1; j < equals.size(); j++) {
+                    if (values.distinct(equals.get(i), equals.get(j))) {
+                        return true;
+                    }
+                }
+            }
+            for (Object value : equals) {
+                if (!satisfiesBoundsOrIncomparable(value)) {
+                    return true;
+                }
+            }
+            if (null != lower && null != upper && values.comparable(lower, upper)) {
+                int c = values.compare(lower, upper);
+                return c > 0 || c == 0 && !(lowerInclusive && upperInclusive);
+            }
+            return false;
+        }
+
+        private boolean satisfiesBounds(Object value) {
+            return (null == lower || values.comparable(value, lower) && satisfiesLower(value))
+                    && (null == upper || values.comparable(value, upper) && satisfiesUpper(value));
+        }
+
+        private boolean satisfiesBoundsOrIncomparable(Object value) {
+            return (null == lower || !values.comparable(value, lower) || satisfiesLower(value))
+                    && (null == upper || !values.comparable(value, upper) || satisfiesUpper(value));
+        }
+
+        private boolean satisfiesLower(Object value) {
+            int c = values.compare(value, lower);
+            return c > 0 || c == 0 && lowerInclusive;
+        }
+
+        private boolean satisfiesUpper(Object value) {
+            int c = values.compare(value, upper);
+            return c < 0 || c == 0 && upperInclusive;
+        }
+    }
+}
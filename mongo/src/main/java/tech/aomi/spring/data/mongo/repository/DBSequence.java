@@ -1,5 +1,6 @@
 package tech.aomi.spring.data.mongo.repository;
 
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document("DBSequence")
@@ -10,6 +11,7 @@ public class DBSequence {
      */
     private String id;
 
+    @Indexed(unique = true)
     private String sequence;
 
     private Long value;
@@ -4,8 +4,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * @author Sean createAt 17-12-6.
@@ -31,6 +36,18 @@ public interface DocumentRepository {
      */
     <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass);
 
+    /**
+     * 分页查询数据
+     *
+     * @param query         查询条件
+     * @param pageable      分页排序信息
+     * @param documentClass 文档实体Class
+     * @param countStrategy 统计总数的方式, 为null时使用集合或全局配置
+     * @param <T>           文档类型
+     * @return 分页查询结果
+     */
+    <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass, CountStrategy countStrategy);
+
     /**
      * 分页查询数据
      *
@@ -45,4 +62,181 @@ public interface DocumentRepository {
 
     <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName);
 
+    /**
+     * 分页查询数据
+     *
+     * @param query          查询条件
+     * @param pageable       分页排序信息
+     * @param resultClass    查询结果实体类型
+     * @param collectionName 集合名称
+     * @param countStrategy  统计总数的方式, 为null时使用集合或全局配置
+     * @param <T>            文档类型
+     * @return 分页查询结果
+     */
+    <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName, CountStrategy countStrategy);
+
+    /**
+     * 游标分页查询, 从续传令牌之后开始读取
+     *
+     * @param query         查询条件
+     * @param sort          排序, 自动追加 _id 作为唯一排序
+     * @param token         上一页返回的续传令牌, 查询第一页时为null
+     * @param limit         每页数量
+     * @param documentClass 文档实体Class
+     * @param <T>           文档类型
+     * @return 查询结果和下一页的续传令牌
+     */
+    <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> documentClass);
+
+    <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> resultClass, String collectionName);
+
+    /**
+     * 查询多个集合并按排序归并, 适用于按时间分区的集合。
+     * 各集合最多读取 offset + pageSize 条, 总数为各集合总数之和, 各集合并发查询。
+     * 归并按 BSON 二进制顺序比较, 不支持 collation, 查询或集合默认选项设置了 collation 时抛出 IllegalArgumentException
+     *
+     * @param query           查询条件
+     * @param pageable        分页排序信息, 没有排序时按集合顺序拼接
+     * @param resultClass     查询结果实体类型
+     * @param collectionNames 集合名称, 可以使用 {@link CollectionPartitions} 按时间范围生成
+     * @param <T>             文档类型
+     * @return 分页查询结果
+     */
+    <T> Page<T> findAcross(Query query, Pageable pageable, Class<T> resultClass, List<String> collectionNames);
+
+    /**
+     * 聚合分页查询, 通过 $facet 在一次查询中返回当前页数据和总数
+     *
+     * @param aggregation   聚合查询
+     * @param pageable      分页排序信息, 排序在聚合的最后阶段之后执行
+     * @param resultClass   结果类型
+     * @param documentClass 文档实体Class
+     * @param <T>           结果类型
+     * @return 分页查询结果
+     */
+    <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, Class<?> documentClass);
+
+    <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, String collectionName);
+
+    /**
+     * 创建按 _id 批量加载的加载器, 需要调用 {@link BatchLoader#dispatch()} 执行查询
+     *
+     * @param documentClass 文档实体Class
+     * @param <K>           key 类型
+     * @param <T>           文档类型
+     * @return 批量加载器
+     */
+    <K, T> BatchLoader<K, T> batchLoader(Class<T> documentClass);
+
+    /**
+     * 创建批量加载器, 多次 load 合并为分批的 $in 查询
+     *
+     * @param resultClass    查询结果实体类型
+     * @param collectionName 集合名称
+     * @param keyField       key 字段, 属性名按 resultClass 映射为文档中的字段名
+     * @param maxBatchSize   每次 $in 查询的最大key数量
+     * @param window         第一次 load 之后等待多久自动查询, 为null时只在 dispatch 时查询
+     * @param <K>            key 类型
+     * @param <T>            文档类型
+     * @return 批量加载器
+     */
+    <K, T> BatchLoader<K, T> batchLoader(Class<T> resultClass, String collectionName, String keyField, int maxBatchSize, Duration window);
+
+    /**
+     * 使用游标流式读取数据, 使用完毕后必须关闭流(try-with-resources)以释放服务端游标
+     *
+     * @param query         查询条件
+     * @param documentClass 文档实体Class
+     * @param <T>           文档类型
+     * @return 数据流
+     */
+    <T> Stream<T> stream(Query query, Class<T> documentClass);
+
+    /**
+     * 使用游标流式读取数据, 使用完毕后必须关闭流(try-with-resources)以释放服务端游标
+     *
+     * @param query           查询条件
+     * @param batchSize       游标每批返回的数量, 小于等于0时使用服务端默认值
+     * @param noCursorTimeout 是否禁止服务端游标空闲超时
+     * @param resultClass     查询结果实体类型
+     * @param collectionName  集合名称
+     * @param <T>             文档类型
+     * @return 数据流
+     */
+    <T> Stream<T> stream(Query query, int batchSize, boolean noCursorTimeout, Class<T> resultClass, String collectionName);
+
+    /**
+     * 按批次处理查询结果, 内存中最多只保留一批数据, 处理完成或异常时自动关闭游标
+     *
+     * @param query         查询条件
+     * @param batchSize     每批数量
+     * @param consumer      批次处理
+     * @param documentClass 文档实体Class
+     * @param <T>           文档类型
+     */
+    <T> void forEachBatch(Query query, int batchSize, Consumer<List<T>> consumer, Class<T> documentClass);
+
+    /**
+     * 按批次处理查询结果, 内存中最多只保留一批数据, 处理完成或异常时自动关闭游标
+     *
+     * @param query           查询条件
+     * @param batchSize       每批数量
+     * @param noCursorTimeout 是否禁止服务端游标空闲超时, 单批处理耗时较长时需要开启
+     * @param consumer        批次处理
+     * @param resultClass     查询结果实体类型
+     * @param collectionName  集合名称
+     * @param <T>             文档类型
+     */
+    <T> void forEachBatch(Query query, int batchSize, boolean noCursorTimeout, Consumer<List<T>> consumer, Class<T> resultClass, String collectionName);
+
+    /**
+     * 批量插入
+     *
+     * @param documents     文档列表
+     * @param documentClass 文档实体Class
+     * @param options       批量写入选项
+     * @return 写入结果
+     */
+    BulkResult insertAll(List<?> documents, Class<?> documentClass, BulkOptions options);
+
+    BulkResult insertAll(List<?> documents, Class<?> documentClass, String collectionName, BulkOptions options);
+
+    /**
+     * 批量插入或替换, 根据 keyFields 的值匹配已存在的文档。
+     * 任意一条数据的匹配字段为null时抛出 IllegalArgumentException, 不写入任何数据
+     *
+     * @param documents     文档列表
+     * @param keyFields     匹配字段, 使用实体的属性名, 按实体映射为文档中的字段名, 嵌套属性使用 . 分隔
+     * @param documentClass 文档实体Class
+     * @param options       批量写入选项
+     * @return 写入结果
+     */
+    BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, BulkOptions options);
+
+    BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, String collectionName, BulkOptions options);
+
+    /**
+     * 批量更新, 每个查询条件匹配的所有文档都会被更新
+     *
+     * @param updates       查询条件和更新内容
+     * @param documentClass 文档实体Class
+     * @param options       批量写入选项
+     * @return 写入结果
+     */
+    BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, BulkOptions options);
+
+    BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, String collectionName, BulkOptions options);
+
+    /**
+     * 批量删除
+     *
+     * @param queries       删除条件
+     * @param documentClass 文档实体Class
+     * @param options       批量写入选项
+     * @return 写入结果
+     */
+    BulkResult deleteAll(List<Query> queries, Class<?> documentClass, BulkOptions options);
+
+    BulkResult deleteAll(List<Query> queries, Class<?> documentClass, String collectionName, BulkOptions options);
+
 }
@@ -1,28 +1,186 @@
 package tech.aomi.spring.data.mongo.repository;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Meta;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import tech.aomi.spring.data.mongo.codec.ReadModelCodec;
+import tech.aomi.spring.data.mongo.codec.ReadModelCodecs;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * @author Sean createAt 17-12-6.
  */
 public class DocumentRepositoryImpl implements DocumentRepository {
 
+    private static final String SIMPLE_COLLATION = "simple";
+
     private final MongoTemplate mongoTemplate;
 
+    /**
+     * 异步查询使用的线程池: 并发count、跨集合查询和 BatchLoader
+     */
+    private final Executor executor;
+
+    /**
+     * 分页查询时count和数据查询并发执行
+     */
+    private boolean concurrentCount = false;
+
+    /**
+     * 分页查询时延迟统计总数
+     */
+    private boolean lazyCount = false;
+
+    private final ProjectionResolver projectionResolver;
+
+    private final QueryMapper queryMapper;
+
+    private final UpdateMapper updateMapper;
+
+    /**
+     * 只读模型解码器, 为null时所有查询都使用 MappingMongoConverter
+     */
+    private ReadModelCodecs readModelCodecs;
+
+    /**
+     * 查询结果为DTO时根据其属性自动设置返回字段
+     */
+    private boolean autoProjection = true;
+
+    /**
+     * 默认的统计方式
+     */
+    private CountStrategy defaultCountStrategy = CountStrategy.EXACT;
+
+    /**
+     * 按集合配置的统计方式
+     */
+    private Map<String, CountStrategy> countStrategies = Collections.emptyMap();
+
+    /**
+     * 查询监听, 记录count和查询的耗时
+     */
+    private QueryListener queryListener = QueryListener.NONE;
+
+    /**
+     * 默认的查询选项, 为null时使用 MongoTemplate 的配置
+     */
+    private QueryOptions defaultQueryOptions;
+
+    /**
+     * 按集合配置的查询选项
+     */
+    private Map<String, QueryOptions> queryOptions = Collections.emptyMap();
+
     public DocumentRepositoryImpl(MongoTemplate mongoTemplate) {
+        this(mongoTemplate, null);
+    }
+
+    /**
+     * @param executor 异步查询使用的线程池, 为null时使用 {@link QueryExecutors#shared()}
+     */
+    public DocumentRepositoryImpl(MongoTemplate mongoTemplate, @Nullable Executor executor) {
         this.mongoTemplate = mongoTemplate;
+        this.executor = null != executor ? executor : QueryExecutors.shared();
+        this.projectionResolver = new ProjectionResolver(mongoTemplate.getConverter());
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        this.updateMapper = new UpdateMapper(mongoTemplate.getConverter());
+    }
+
+    public void setConcurrentCount(boolean concurrentCount) {
+        this.concurrentCount = concurrentCount;
+    }
+
+    public void setReadModelCodecs(ReadModelCodecs readModelCodecs) {
+        this.readModelCodecs = readModelCodecs;
+    }
+
+    public void setAutoProjection(boolean autoProjection) {
+        this.autoProjection = autoProjection;
+    }
+
+    public void setLazyCount(boolean lazyCount) {
+        this.lazyCount = lazyCount;
+    }
+
+    public void setDefaultCountStrategy(CountStrategy defaultCountStrategy) {
+        Assert.notNull(defaultCountStrategy, "defaultCountStrategy 不能为null");
+        this.defaultCountStrategy = defaultCountStrategy;
+    }
+
+    public void setCountStrategies(Map<String, CountStrategy> countStrategies) {
+        this.countStrategies = null == countStrategies ? Collections.emptyMap() : Map.copyOf(countStrategies);
+    }
+
+    public void setDefaultQueryOptions(QueryOptions defaultQueryOptions) {
+        this.defaultQueryOptions = defaultQueryOptions;
+    }
+
+    public void setQueryOptions(Map<String, QueryOptions> queryOptions) {
+        this.queryOptions = null == queryOptions ? Collections.emptyMap() : Map.copyOf(queryOptions);
+    }
+
+    public void setQueryListener(QueryListener queryListener) {
+        this.queryListener = null == queryListener ? QueryListener.NONE : queryListener;
     }
 
     @Override
     public <T> List<T> findAll(Query query, Class<T> documentClass) {
-        return this.mongoTemplate.find(query, documentClass);
+        return find(query, documentClass, mongoTemplate.getCollectionName(documentClass));
     }
 
     @Override
@@ -38,24 +196,18 @@ public class DocumentRepositoryImpl implements DocumentRepository {
     @Override
     public <T> List<T> findAll(Query query, Sort sort, Class<T> resultClass, String collectionName) {
         query.with(sort);
-        return this.mongoTemplate.find(query, resultClass, collectionName);
+        project(query, resultClass);
+        return find(query, resultClass, collectionName);
     }
 
     @Override
     public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass) {
-        long total = 0;
-        boolean noCount = true;
-        if (null != pageable) {
-            total = this.mongoTemplate.count(query, documentClass);
-            noCount = false;
-            query.with(pageable);
-        }
-        List<T> content = this.mongoTemplate.find(query, documentClass);
-        if (noCount) {
-            total = content.size();
-        }
+        return findAll(query, pageable, documentClass, (CountStrategy) null);
+    }
 
-        return pageable == null ? new PageImpl<>(content) : new PageImpl<>(content, pageable, total);
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> documentClass, CountStrategy countStrategy) {
+        return findPage(query, pageable, documentClass, documentClass, mongoTemplate.getCollectionName(documentClass), countStrategy);
     }
 
 
@@ -66,20 +218,638 @@ public class DocumentRepositoryImpl implements DocumentRepository {
 
     @Override
     public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName) {
+        return findAll(query, pageable, resultClass, collectionName, null);
+    }
+
+    @Override
+    public <T> Page<T> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName, CountStrategy countStrategy) {
+        return findPage(query, pageable, resultClass, null, collectionName, countStrategy);
+    }
+
+    private <T> Page<T> findPage(Query query, Pageable pageable, Class<T> resultClass, @Nullable Class<?> documentClass, String collectionName, @Nullable CountStrategy countStrategy) {
+        if (UnsatisfiableQuery.is(query)) {
+            return null == pageable ? new PageImpl<>(new ArrayList<>()) : new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+        project(query, resultClass);
+        if (null == pageable) {
+            return new PageImpl<>(find(query, resultClass, collectionName));
+        }
+        CountStrategy strategy = null != countStrategy ? countStrategy : countStrategies.getOrDefault(collectionName, defaultCountStrategy);
+        // count 不能带上分页的 skip/limit, 复制时查询选项尚未合并, count 可以区分调用方设置的读偏好
+        Query countQuery = Query.of(query);
+        if (query.hasReadPreference()) {
+            countQuery.withReadPreference(query.getReadPreference());
+        }
+        query.with(pageable);
+
+        if (lazyCount) {
+            query.limit(pageable.getPageSize() + 1);
+            List<T> content = find(query, resultClass, collectionName);
+            boolean hasNext = content.size() > pageable.getPageSize();
+            if (hasNext) {
+                content = content.subList(0, pageable.getPageSize());
+            }
+            return new LazyCountPage<>(content, pageable, hasNext, () -> count(strategy, countQuery, documentClass, collectionName));
+        }
+
+        if (!concurrentCount) {
+            long total = count(strategy, countQuery, documentClass, collectionName);
+            List<T> content = find(query, resultClass, collectionName);
+            return new PageImpl<>(content, pageable, total);
+        }
+
+        CompletableFuture<Long> total = CompletableFuture.supplyAsync(() -> count(strategy, countQuery, documentClass, collectionName), executor);
+        List<T> content = find(query, resultClass, collectionName);
+        return new PageImpl<>(content, pageable, join(total));
+    }
+
+    @Override
+    public <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> documentClass) {
+        return findAfter(query, sort, token, limit, documentClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> KeysetSlice<T> findAfter(Query query, Sort sort, String token, int limit, Class<T> resultClass, String collectionName) {
+        Assert.isTrue(limit > 0, "limit 必须大于0");
+        if (UnsatisfiableQuery.is(query)) {
+            return new KeysetSlice<>(new ArrayList<>(), null);
+        }
+        project(query, resultClass);
+        applyOptions(query, collectionName);
+
+        // 条件和排序按结果类型映射为文档中的字段名, 续传令牌保存文档中的原始值, 支持 @Field 和 targetType
+        MongoPersistentEntity<?> entity = persistentEntity(resultClass);
+        Sort keysetSort = mappedSort(Keyset.sort(sort), entity);
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        if (null != token) {
+            Document seek = Keyset.criteria(keysetSort, token).getCriteriaObject();
+            filter = filter.isEmpty() ? seek : new Document("$and", List.of(filter, seek));
+        }
+        Document fields = queryMapper.getMappedFields(query.getFieldsObject(), entity);
+        if (isInclusion(fields)) {
+            // 生成续传令牌需要读取排序字段
+            fields = new Document(fields);
+            for (Sort.Order order : keysetSort) {
+                fields.put(order.getProperty(), 1);
+            }
+        }
+        Query seekQuery = new BasicQuery(filter, fields);
+        seekQuery.with(keysetSort);
+        seekQuery.limit(limit + 1);
+        copyOptions(query, seekQuery);
+
+        List<Document> rows = findDocuments(seekQuery, resultClass, collectionName);
+        boolean hasNext = rows.size() > limit;
+        if (hasNext) {
+            rows = rows.subList(0, limit);
+        }
+        MongoConverter converter = this.mongoTemplate.getConverter();
+        List<T> content = new ArrayList<>(rows.size());
+        for (Document row : rows) {
+            content.add(converter.read(resultClass, row));
+        }
+        String nextToken = hasNext ? Keyset.encode(keysetSort, rows.get(rows.size() - 1)) : null;
+        return new KeysetSlice<>(content, nextToken);
+    }
+
+    @Override
+    public <T> Page<T> findAcross(Query query, Pageable pageable, Class<T> resultClass, List<String> collectionNames) {
+        Assert.notEmpty(collectionNames, "collectionNames 不能为空");
+        Pageable page = null == pageable ? Pageable.unpaged() : pageable;
+        if (UnsatisfiableQuery.is(query)) {
+            return page.isPaged() ? new PageImpl<>(new ArrayList<>(), page, 0) : new PageImpl<>(new ArrayList<>());
+        }
+        project(query, resultClass);
+
+        // 条件和排序按结果类型映射为文档中的字段名, 归并时读取的是原始文档
+        MongoPersistentEntity<?> entity = persistentEntity(resultClass);
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        Document sort = new Document(query.getSortObject());
+        for (Sort.Order order : page.getSort()) {
+            sort.put(Keyset.fieldName(order.getProperty()), order.isAscending() ? 1 : -1);
+        }
+        sort = queryMapper.getMappedSort(sort, entity);
+        Document fields = queryMapper.getMappedFields(query.getFieldsObject(), entity);
+        if (isInclusion(fields)) {
+            // 归并需要读取排序字段
+            fields = new Document(fields);
+            for (String field : sort.keySet()) {
+                fields.put(field, 1);
+            }
+        }
+        // 每个集合最多需要 offset + pageSize 条才能保证归并结果正确
+        int limit = page.isPaged() ? (int) Math.min(Integer.MAX_VALUE, page.getOffset() + page.getPageSize()) : 0;
+        List<BasicQuery> findQueries = new ArrayList<>(collectionNames.size());
+        for (String collectionName : collectionNames) {
+            // 每个集合使用独立的查询对象, 各集合的默认查询选项可能不同
+            BasicQuery findQuery = new BasicQuery(filter, fields);
+            findQuery.setSortObject(sort);
+            findQuery.limit(limit);
+            copyOptions(query, findQuery);
+            applyOptions(findQuery, collectionName);
+            // 归并按二进制顺序比较, 与集合内的 collation 排序不一致
+            findQuery.getCollation().ifPresent(collation -> Assert.isTrue(SIMPLE_COLLATION.equals(collation.toDocument().getString("locale")),
+                    () -> "跨集合查询不支持 collation: " + collectionName + " " + collation.toDocument().toJson()));
+            findQueries.add(findQuery);
+        }
+        List<CompletableFuture<List<Document>>> rows = new ArrayList<>(collectionNames.size());
+        List<CompletableFuture<Long>> totals = new ArrayList<>(collectionNames.size());
+        for (int i = 0; i < collectionNames.size(); i++) {
+            String collectionName = collectionNames.get(i);
+            BasicQuery findQuery = findQueries.get(i);
+            rows.add(CompletableFuture.supplyAsync(() -> findDocuments(findQuery, resultClass, collectionName), executor));
+            if (page.isPaged()) {
+                CountStrategy strategy = countStrategies.getOrDefault(collectionName, defaultCountStrategy);
+                // count 由 MongoTemplate 按结果类型映射条件
+                BasicQuery countQuery = new BasicQuery(query.getQueryObject());
+                copyOptions(query, countQuery);
+                totals.add(CompletableFuture.supplyAsync(() -> count(strategy, countQuery, resultClass, collectionName), executor));
+            }
+        }
+
+        List<List<Document>> sources = new ArrayList<>(rows.size());
+        rows.forEach(future -> sources.add(join(future)));
+        List<Document> merged = SortedMerge.merge(sources, sort, page.isPaged() ? page.getOffset() : 0, page.isPaged() ? page.getPageSize() : -1);
+
+        MongoConverter converter = this.mongoTemplate.getConverter();
+        List<T> content = new ArrayList<>(merged.size());
+        for (Document row : merged) {
+            content.add(converter.read(resultClass, row));
+        }
+        if (page.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
         long total = 0;
-        boolean noCount = true;
-        if (null != pageable) {
-            total = this.mongoTemplate.count(query, collectionName);
-            noCount = false;
-            query.with(pageable);
+        for (CompletableFuture<Long> future : totals) {
+            total += join(future);
+        }
+        return new PageImpl<>(content, page, total);
+    }
+
+    @Override
+    public <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, Class<?> documentClass) {
+        return aggregatePage(aggregation, pageable, resultClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> Page<T> aggregatePage(AggregationBuilder aggregation, Pageable pageable, Class<T> resultClass, String collectionName) {
+        Pageable page = null == pageable ? Pageable.unpaged() : pageable;
+        Document result = this.mongoTemplate.aggregate(aggregation.buildPage(page), collectionName, Document.class).getUniqueMappedResult();
+        if (null == result) {
+            return page.isPaged() ? new PageImpl<>(new ArrayList<>(), page, 0) : new PageImpl<>(new ArrayList<>());
+        }
+        MongoConverter converter = this.mongoTemplate.getConverter();
+        List<Document> rows = result.getList(AggregationBuilder.ROWS, Document.class, List.of());
+        List<T> content = new ArrayList<>(rows.size());
+        for (Document row : rows) {
+            content.add(converter.read(resultClass, row));
+        }
+        if (page.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
+        List<Document> totals = result.getList(AggregationBuilder.TOTAL, Document.class, List.of());
+        long total = totals.isEmpty() ? 0 : totals.get(0).get(AggregationBuilder.TOTAL, Number.class).longValue();
+        return new PageImpl<>(content, page, total);
+    }
+
+    @Override
+    public <K, T> BatchLoader<K, T> batchLoader(Class<T> documentClass) {
+        return batchLoader(documentClass, mongoTemplate.getCollectionName(documentClass), Keyset.ID_FIELD, 1000, null);
+    }
+
+    @Override
+    public <K, T> BatchLoader<K, T> batchLoader(Class<T> resultClass, String collectionName, String keyField, int maxBatchSize, @Nullable Duration window) {
+        Assert.hasText(keyField, "keyField 不能为空");
+        MongoPersistentEntity<?> entity = persistentEntity(resultClass);
+        // key 字段和值按结果类型映射, 结果使用文档中的值与映射后的 key 匹配
+        String key = Keyset.fieldName(keyField);
+        String field = queryMapper.getMappedSort(new Document(key, 1), entity).keySet().iterator().next();
+        List<String> path = List.of(field.split("\\."));
+        MongoConverter converter = this.mongoTemplate.getConverter();
+        return new BatchLoader<>(keys -> {
+            Query query = new Query(Criteria.where(key).in(keys));
+            project(query, resultClass);
+            Document fields = queryMapper.getMappedFields(query.getFieldsObject(), entity);
+            if (isInclusion(fields)) {
+                // 需要读取key字段匹配结果
+                fields = new Document(fields);
+                fields.put(field, 1);
+            }
+            Document mappedObject = queryMapper.getMappedObject(query.getQueryObject(), entity);
+            // $in 中的值与 keys 顺序一致, 映射后的值(ObjectId、Date、Binary 等)与文档中的值可以直接比较
+            List<?> mappedKeys = ((Document) mappedObject.values().iterator().next()).getList("$in", Object.class);
+            Map<Object, K> keyByValue = new HashMap<>(keys.size() * 2);
+            for (int i = 0; i < keys.size(); i++) {
+                keyByValue.putIfAbsent(mappedKeys.get(i), keys.get(i));
+            }
+            List<Document> rows = findDocuments(new BasicQuery(mappedObject, fields), resultClass, collectionName);
+            Map<K, T> result = new HashMap<>(rows.size() * 2);
+            for (Document row : rows) {
+                K k = keyByValue.get(row.getEmbedded(path, Object.class));
+                if (null != k) {
+                    result.putIfAbsent(k, converter.read(resultClass, row));
+                }
+            }
+            return result;
+        }, maxBatchSize, window, executor);
+    }
+
+    @Override
+    public <T> Stream<T> stream(Query query, Class<T> documentClass) {
+        return stream(query, 0, false, documentClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> Stream<T> stream(Query query, int batchSize, boolean noCursorTimeout, Class<T> resultClass, String collectionName) {
+        if (UnsatisfiableQuery.is(query)) {
+            return Stream.empty();
+        }
+        if (batchSize > 0) {
+            query.cursorBatchSize(batchSize);
+        }
+        if (noCursorTimeout) {
+            query.noCursorTimeout();
+        }
+        project(query, resultClass);
+        applyOptions(query, collectionName);
+        return this.mongoTemplate.stream(query, resultClass, collectionName);
+    }
+
+    @Override
+    public <T> void forEachBatch(Query query, int batchSize, Consumer<List<T>> consumer, Class<T> documentClass) {
+        forEachBatch(query, batchSize, false, consumer, documentClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> void forEachBatch(Query query, int batchSize, boolean noCursorTimeout, Consumer<List<T>> consumer, Class<T> resultClass, String collectionName) {
+        Assert.isTrue(batchSize > 0, "batchSize 必须大于0");
+        try (Stream<T> stream = stream(query, batchSize, noCursorTimeout, resultClass, collectionName)) {
+            Iterator<T> iterator = stream.iterator();
+            List<T> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        }
+    }
+
+    @Override
+    public BulkResult insertAll(List<?> documents, Class<?> documentClass, BulkOptions options) {
+        return insertAll(documents, documentClass, mongoTemplate.getCollectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult insertAll(List<?> documents, Class<?> documentClass, String collectionName, BulkOptions options) {
+        return bulkWrite(documents, documentClass, collectionName, options, BulkOperations::insert,
+                document -> new InsertOneModel<>(toDocument(document)));
+    }
+
+    @Override
+    public BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, BulkOptions options) {
+        return upsertAll(documents, keyFields, documentClass, mongoTemplate.getCollectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult upsertAll(List<?> documents, List<String> keyFields, Class<?> documentClass, String collectionName, BulkOptions options) {
+        Assert.notEmpty(keyFields, "keyFields 不能为空");
+        MongoPersistentEntity<?> entity = persistentEntity(documentClass);
+        // 属性名映射为文档中的字段名, 从转换后的文档中读取 key 的值
+        List<String> fields = new ArrayList<>(keyFields.size());
+        keyFields.forEach(keyField -> fields.add(queryMapper.getMappedSort(new Document(Keyset.fieldName(keyField), 1), entity).keySet().iterator().next()));
+        // 写入前检查所有 key, key 为null时 is(null) 会匹配到其它文档
+        List<Pair<Document, Document>> replacements = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = toDocument(documents.get(i));
+            Document filter = new Document();
+            for (int j = 0; j < fields.size(); j++) {
+                Object value = document.getEmbedded(List.of(fields.get(j).split("\\.")), Object.class);
+                if (null == value) {
+                    throw new IllegalArgumentException("第 " + i + " 条数据的 key 字段 " + keyFields.get(j) + " 为null");
+                }
+                filter.put(fields.get(j), value);
+            }
+            replacements.add(Pair.of(filter, document));
+        }
+        // 条件和文档都已映射, 按 Document 执行不再重复映射
+        return bulkWrite(replacements, documentClass, collectionName, options,
+                (ops, replacement) -> ops.replaceOne(new BasicQuery(replacement.getFirst()), replacement.getSecond(), FindAndReplaceOptions.options().upsert()),
+                replacement -> new ReplaceOneModel<>(replacement.getFirst(), replacement.getSecond(), new ReplaceOptions().upsert(true)));
+    }
+
+    @Override
+    public BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, BulkOptions options) {
+        return updateMulti(updates, documentClass, mongoTemplate.getCollectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult updateMulti(List<Pair<Query, UpdateDefinition>> updates, Class<?> documentClass, String collectionName, BulkOptions options) {
+        MongoPersistentEntity<?> entity = persistentEntity(documentClass);
+        return bulkWrite(updates, documentClass, collectionName, options,
+                (ops, update) -> ops.updateMulti(update.getFirst(), update.getSecond()),
+                update -> {
+                    Query query = update.getFirst();
+                    UpdateDefinition definition = update.getSecond();
+                    Assert.isTrue(definition instanceof Update, "指定写关注时只支持 Update");
+                    UpdateOptions updateOptions = new UpdateOptions();
+                    query.getCollation().map(Collation::toMongoCollation).ifPresent(updateOptions::collation);
+                    if (definition.hasArrayFilters()) {
+                        List<Document> arrayFilters = new ArrayList<>(definition.getArrayFilters().size());
+                        definition.getArrayFilters().forEach(arrayFilter -> arrayFilters.add(queryMapper.getMappedObject(arrayFilter.asDocument(), entity)));
+                        updateOptions.arrayFilters(arrayFilters);
+                    }
+                    return new UpdateManyModel<>(queryMapper.getMappedObject(query.getQueryObject(), entity),
+                            updateMapper.getMappedObject(definition.getUpdateObject(), entity), updateOptions);
+                });
+    }
+
+    @Override
+    public BulkResult deleteAll(List<Query> queries, Class<?> documentClass, BulkOptions options) {
+        return deleteAll(queries, documentClass, mongoTemplate.getCollectionName(documentClass), options);
+    }
+
+    @Override
+    public BulkResult deleteAll(List<Query> queries, Class<?> documentClass, String collectionName, BulkOptions options) {
+        MongoPersistentEntity<?> entity = persistentEntity(documentClass);
+        return bulkWrite(queries, documentClass, collectionName, options, BulkOperations::remove,
+                query -> {
+                    DeleteOptions deleteOptions = new DeleteOptions();
+                    query.getCollation().map(Collation::toMongoCollation).ifPresent(deleteOptions::collation);
+                    return new DeleteManyModel<>(queryMapper.getMappedObject(query.getQueryObject(), entity), deleteOptions);
+                });
+    }
+
+    /**
+     * 按 batchSize 拆分后批量写入, 汇总每批的结果和失败信息。
+     * 未指定写关注时通过 MongoTemplate 的 BulkOperations 写入, 保留实体回调和生命周期事件;
+     * 指定写关注时把数据映射为驱动的 WriteModel, 在设置了写关注的集合上执行
+     *
+     * @param operation 把单条数据添加到 BulkOperations
+     * @param model     把单条数据映射为 WriteModel
+     */
+    private <E> BulkResult bulkWrite(List<E> items, Class<?> documentClass, String collectionName, @Nullable BulkOptions options,
+                                     BiConsumer<BulkOperations, E> operation, Function<E, WriteModel<Document>> model) {
+        BulkOptions bulkOptions = null == options ? BulkOptions.unordered() : options;
+        BulkOperations.BulkMode mode = bulkOptions.isOrdered() ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED;
+        WriteConcern writeConcern = bulkOptions.getWriteConcern();
+
+        BulkResult result = new BulkResult();
+        for (int start = 0; start < items.size(); start += bulkOptions.getBatchSize()) {
+            List<E> batch = items.subList(start, Math.min(items.size(), start + bulkOptions.getBatchSize()));
+            BatchResult batchResult;
+            if (null == writeConcern) {
+                BulkOperations ops = this.mongoTemplate.bulkOps(mode, documentClass, collectionName);
+                batch.forEach(item -> operation.accept(ops, item));
+                try {
+                    batchResult = new BatchResult(ops.execute(), List.of());
+                } catch (BulkOperationException e) {
+                    batchResult = new BatchResult(e.getResult(), e.getErrors());
+                }
+            } else {
+                List<WriteModel<Document>> models = new ArrayList<>(batch.size());
+                batch.forEach(item -> models.add(model.apply(item)));
+                BulkWriteOptions writeOptions = new BulkWriteOptions().ordered(bulkOptions.isOrdered());
+                batchResult = this.mongoTemplate.execute(collectionName, collection -> {
+                    try {
+                        return new BatchResult(collection.withWriteConcern(writeConcern).bulkWrite(models, writeOptions), List.of());
+                    } catch (MongoBulkWriteException e) {
+                        // 在回调中处理, 避免被转换为不包含写入结果的异常
+                        return new BatchResult(e.getWriteResult(), e.getWriteErrors());
+                    }
+                });
+            }
+            result.add(batchResult.result());
+            for (BulkWriteError error : batchResult.errors()) {
+                result.addFailure(start + error.getIndex(), error.getCode(), error.getMessage());
+            }
+            if (!batchResult.errors().isEmpty() && bulkOptions.isOrdered()) {
+                break;
+            }
         }
-        List<T> content = this.mongoTemplate.find(query, resultClass, collectionName);
-        if (noCount) {
-            total = content.size();
+        return result;
+    }
+
+    /**
+     * 把实体转换为文档, Document 直接使用
+     */
+    private Document toDocument(Object source) {
+        if (source instanceof Document document) {
+            return document;
+        }
+        Document document = new Document();
+        this.mongoTemplate.getConverter().write(source, document);
+        return document;
+    }
+
+    private record BatchResult(BulkWriteResult result, List<BulkWriteError> errors) {
+    }
+
+    private long count(CountStrategy strategy, Query query, @Nullable Class<?> documentClass, String collectionName) {
+        QueryOptions options = options(collectionName);
+        if (!query.hasReadPreference() && null != options && null != options.getCountReadPreference()) {
+            // 调用方指定的读偏好优先
+            query.withReadPreference(options.getCountReadPreference());
+        }
+        applyOptions(query, collectionName);
+        long start = System.nanoTime();
+        long total = strategy.count(this.mongoTemplate, query, documentClass, collectionName);
+        publish(QueryEvent.Operation.COUNT, collectionName, query, documentClass, false, System.nanoTime() - start, total);
+        return total;
+    }
+
+    @Nullable
+    private QueryOptions options(String collectionName) {
+        return queryOptions.getOrDefault(collectionName, defaultQueryOptions);
+    }
+
+    /**
+     * 查询中未设置的选项使用集合的默认值
+     */
+    private void applyOptions(Query query, String collectionName) {
+        QueryOptions options = options(collectionName);
+        if (null != options) {
+            options.applyTo(query);
+        }
+    }
+
+    /**
+     * 复制查询选项, 不共享 Meta 对象
+     */
+    private static void copyOptions(Query source, Query target) {
+        Meta meta = source.getMeta();
+        if (null != meta.getMaxTimeMsec()) {
+            target.maxTimeMsec(meta.getMaxTimeMsec());
+        }
+        if (null != meta.getCursorBatchSize()) {
+            target.cursorBatchSize(meta.getCursorBatchSize());
+        }
+        if (null != meta.getComment()) {
+            target.comment(meta.getComment());
+        }
+        if (meta.getAllowDiskUse() != null) {
+            target.allowDiskUse(meta.getAllowDiskUse());
+        }
+        source.getCollation().ifPresent(target::collation);
+        if (null != source.getHint()) {
+            target.withHint(source.getHint());
+        }
+        if (source.hasReadPreference()) {
+            target.withReadPreference(source.getReadPreference());
+        }
+    }
+
+    private <T> List<T> find(Query query, Class<T> resultClass, String collectionName) {
+        if (UnsatisfiableQuery.is(query)) {
+            return new ArrayList<>();
         }
+        applyOptions(query, collectionName);
+        long start = System.nanoTime();
+        List<T> content;
+        if (null != readModelCodecs && readModelCodecs.supports(resultClass)) {
+            // 使用只读模型解码器查询, 查询条件仍由 QueryMapper 映射
+            ReadModelCodec<T> codec = readModelCodecs.codec(resultClass);
+            Query mappedQuery = mapped(query, persistentEntity(resultClass));
+            content = findMapped(mappedQuery, resultClass, codec, collectionName);
+            publish(QueryEvent.Operation.FIND, collectionName, mappedQuery, resultClass, true, System.nanoTime() - start, content.size());
+        } else {
+            content = this.mongoTemplate.find(query, resultClass, collectionName);
+            publish(QueryEvent.Operation.FIND, collectionName, query, resultClass, false, System.nanoTime() - start, content.size());
+        }
+        return content;
+    }
+
+    /**
+     * 查询原始文档, 查询条件、返回字段和排序已经映射为文档中的字段名
+     *
+     * @param documentClass 映射查询条件使用的实体Class, 只用于查询事件
+     */
+    private List<Document> findDocuments(Query mappedQuery, @Nullable Class<?> documentClass, String collectionName) {
+        if (UnsatisfiableQuery.is(mappedQuery)) {
+            return new ArrayList<>();
+        }
+        applyOptions(mappedQuery, collectionName);
+        long start = System.nanoTime();
+        List<Document> rows = findMapped(mappedQuery, Document.class, null, collectionName);
+        publish(QueryEvent.Operation.FIND, collectionName, mappedQuery, documentClass, true, System.nanoTime() - start, rows.size());
+        return rows;
+    }
+
+    /**
+     * 发布查询事件。事件中的查询条件统一映射为文档中的字段名, 同一种查询不论经过哪个方法都得到相同的查询结构;
+     * 没有监听时不映射
+     *
+     * @param mapped 查询条件是否已经映射
+     */
+    private void publish(QueryEvent.Operation operation, String collectionName, Query query, @Nullable Class<?> documentClass, boolean mapped, long nanos, long documents) {
+        if (queryListener == QueryListener.NONE) {
+            return;
+        }
+        Query eventQuery = mapped ? query : mapped(query, null == documentClass ? null : persistentEntity(documentClass));
+        queryListener.onQuery(new QueryEvent(operation, collectionName, eventQuery, documentClass, nanos, documents));
+    }
+
+    /**
+     * 使用 QueryMapper 把查询条件、返回字段和排序映射为文档中的字段名, 并转换字段值的类型, 查询选项不变
+     */
+    private Query mapped(Query query, @Nullable MongoPersistentEntity<?> entity) {
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        Document fields = queryMapper.getMappedFields(query.getFieldsObject(), entity);
+        BasicQuery mapped = new BasicQuery(filter, fields);
+        mapped.setSortObject(queryMapper.getMappedSort(query.getSortObject(), entity));
+        mapped.skip(query.getSkip());
+        mapped.limit(query.getLimit());
+        copyOptions(query, mapped);
+        return mapped;
+    }
 
-        return pageable == null ? new PageImpl<>(content) : new PageImpl<>(content, pageable, total);
+    /**
+     * 把排序映射为文档中的字段名
+     */
+    private Sort mappedSort(Sort sort, @Nullable MongoPersistentEntity<?> entity) {
+        Document document = new Document();
+        for (Sort.Order order : sort) {
+            document.put(Keyset.fieldName(order.getProperty()), order.isAscending() ? 1 : -1);
+        }
+        List<Sort.Order> orders = new ArrayList<>(document.size());
+        queryMapper.getMappedSort(document, entity).forEach((field, direction) ->
+                orders.add(direction instanceof Number number && number.intValue() < 0 ? Sort.Order.desc(field) : Sort.Order.asc(field)));
+        return Sort.by(orders);
     }
 
+    @Nullable
+    private MongoPersistentEntity<?> persistentEntity(Class<?> type) {
+        return this.mongoTemplate.getConverter().getMappingContext().getPersistentEntity(type);
+    }
+
+    /**
+     * 直接在集合上执行已映射的查询, 不再经过 MongoTemplate 的映射
+     *
+     * @param codec 解码器, 为null时使用集合的 CodecRegistry
+     */
+    private <T> List<T> findMapped(Query mappedQuery, Class<T> resultClass, @Nullable Codec<T> codec, String collectionName) {
+        return this.mongoTemplate.execute(collectionName, collection -> {
+            MongoCollection<Document> target = mappedQuery.hasReadPreference() ? collection.withReadPreference(mappedQuery.getReadPreference()) : collection;
+            if (null != codec) {
+                CodecRegistry registry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec), collection.getCodecRegistry());
+                target = target.withCodecRegistry(registry);
+            }
+            FindIterable<T> iterable = target.find(mappedQuery.getQueryObject(), resultClass)
+                    .projection(mappedQuery.getFieldsObject())
+                    .sort(mappedQuery.getSortObject())
+                    .skip((int) mappedQuery.getSkip())
+                    .limit(mappedQuery.getLimit());
+            Meta meta = mappedQuery.getMeta();
+            if (null != meta.getCursorBatchSize()) {
+                iterable.batchSize(meta.getCursorBatchSize());
+            }
+            if (null != meta.getMaxTimeMsec()) {
+                iterable.maxTime(meta.getMaxTimeMsec(), TimeUnit.MILLISECONDS);
+            }
+            if (null != meta.getComment()) {
+                iterable.comment(meta.getComment());
+            }
+            mappedQuery.getCollation().map(Collation::toMongoCollation).ifPresent(iterable::collation);
+            String hint = mappedQuery.getHint();
+            if (StringUtils.hasText(hint)) {
+                if (hint.startsWith("{")) {
+                    iterable.hint(Document.parse(hint));
+                } else {
+                    iterable.hintString(hint);
+                }
+            }
+            return iterable.into(new ArrayList<>());
+        });
+    }
+
+    private void project(Query query, Class<?> resultClass) {
+        if (autoProjection) {
+            projectionResolver.apply(query, resultClass);
+        }
+    }
+
+    private static boolean isInclusion(Document fields) {
+        for (Object value : fields.values()) {
+            if (value instanceof Number number && number.intValue() == 1 || Boolean.TRUE.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
 }
@@ -0,0 +1,113 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 游标(keyset)分页工具。
+ * <p>
+ * 把上一页最后一条数据的排序字段值(以及 _id)编码为不透明的续传令牌,
+ * 下一页查询时转换为范围条件, 避免 skip(n) 带来的 O(n) 开销。
+ * 排序字段使用文档中的字段名(DocumentRepository 会先按结果类型映射), 字段值不能为null
+ */
+public final class Keyset {
+
+    public static final String ID_FIELD = "_id";
+
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    private Keyset() {
+    }
+
+    /**
+     * 在排序最后追加 _id 保证排序唯一
+     *
+     * @param sort 排序
+     * @return 追加 _id 后的排序
+     */
+    public static Sort sort(Sort sort) {
+        Sort result = null == sort ? Sort.unsorted() : sort;
+        for (Sort.Order order : result) {
+            if (ID_FIELD.equals(fieldName(order.getProperty()))) {
+                return result;
+            }
+        }
+        return result.and(Sort.by(Sort.Direction.ASC, ID_FIELD));
+    }
+
+    /**
+     * 根据续传令牌生成查询下一页的条件
+     *
+     * @param sort  排序, 需要包含 _id, 参考 {@link #sort(Sort)}
+     * @param token 续传令牌
+     * @return 查询条件
+     */
+    public static Criteria criteria(Sort sort, String token) {
+        Document keys = decode(token);
+        List<Sort.Order> orders = sort.toList();
+        List<Criteria> branches = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            List<Criteria> parts = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                String field = fieldName(orders.get(j).getProperty());
+                parts.add(Criteria.where(field).is(value(keys, field)));
+            }
+            Sort.Order order = orders.get(i);
+            String field = fieldName(order.getProperty());
+            Object value = value(keys, field);
+            parts.add(order.isAscending() ? Criteria.where(field).gt(value) : Criteria.where(field).lt(value));
+            branches.add(parts.size() == 1 ? parts.get(0) : new Criteria().andOperator(parts));
+        }
+        return branches.size() == 1 ? branches.get(0) : new Criteria().orOperator(branches);
+    }
+
+    /**
+     * 从一条数据中提取排序字段值生成续传令牌
+     *
+     * @param sort 排序, 需要包含 _id
+     * @param row  原始文档
+     * @return 续传令牌
+     */
+    public static String encode(Sort sort, Document row) {
+        Document keys = new Document();
+        for (Sort.Order order : sort) {
+            String field = fieldName(order.getProperty());
+            keys.put(field, row.getEmbedded(List.of(field.split("\\.")), Object.class));
+        }
+        String json = keys.toJson(JSON_SETTINGS);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码续传令牌
+     *
+     * @param token 续传令牌
+     * @return 排序字段值
+     */
+    public static Document decode(String token) {
+        Assert.hasText(token, "token 不能为空");
+        try {
+            return Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的续传令牌: " + token, e);
+        }
+    }
+
+    static String fieldName(String property) {
+        return "id".equals(property) ? ID_FIELD : property;
+    }
+
+    private static Object value(Document keys, String field) {
+        Assert.isTrue(keys.containsKey(field), "续传令牌与排序不匹配, 缺少字段: " + field);
+        return keys.get(field);
+    }
+}
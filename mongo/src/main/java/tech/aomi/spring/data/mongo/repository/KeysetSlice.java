@@ -0,0 +1,30 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 游标分页查询结果
+ *
+ * @param <T> 数据类型
+ */
+@Getter
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+
+    /**
+     * 查询下一页使用的续传令牌, 没有下一页时为null
+     */
+    private final String nextToken;
+
+    public KeysetSlice(List<T> content, String nextToken) {
+        this.content = content;
+        this.nextToken = nextToken;
+    }
+
+    public boolean hasNext() {
+        return null != nextToken;
+    }
+}
@@ -0,0 +1,65 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 延迟统计总数的分页结果。
+ * 是否有下一页通过多查询一条数据判断, 只有调用 {@link #getTotalElements()} 或 {@link #getTotalPages()} 时才执行count
+ *
+ * @param <T> 数据类型
+ */
+public class LazyCountPage<T> extends SliceImpl<T> implements Page<T> {
+
+    private final transient LongSupplier totalSupplier;
+
+    private volatile Long total;
+
+    public LazyCountPage(List<T> content, Pageable pageable, boolean hasNext, LongSupplier totalSupplier) {
+        super(content, pageable, hasNext);
+        this.totalSupplier = totalSupplier;
+        // 最后一页可以直接得出总数; 超出末尾的空页无法得知前面有多少数据, 仍需count
+        if (!hasNext && pageable.isUnpaged()) {
+            this.total = (long) content.size();
+        } else if (!hasNext && (!content.isEmpty() || pageable.getOffset() == 0)) {
+            this.total = pageable.getOffset() + content.size();
+        }
+    }
+
+    @Override
+    public int getTotalPages() {
+        return getSize() == 0 ? 1 : (int) Math.ceil((double) getTotalElements() / (double) getSize());
+    }
+
+    @Override
+    public long getTotalElements() {
+        Long value = total;
+        if (null == value) {
+            synchronized (this) {
+                value = total;
+                if (null == value) {
+                    value = totalSupplier.getAsLong();
+                    total = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public <U> Page<U> map(Function<? super T, ? extends U> converter) {
+        LazyCountPage<U> page = new LazyCountPage<>(getConvertedContent(converter), getPageable(), hasNext(), totalSupplier);
+        page.total = total;
+        return page;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Page %s (lazy count)", getNumber() + 1);
+    }
+}
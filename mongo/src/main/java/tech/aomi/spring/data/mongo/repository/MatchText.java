@@ -0,0 +1,78 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 文本匹配工具, 用于生成可以使用索引的正则和维护辅助查询字段
+ */
+public final class MatchText {
+
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private MatchText() {
+    }
+
+    /**
+     * 转义正则元字符
+     *
+     * @param value 原始文本
+     * @return 转义后的文本
+     */
+    public static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (META_CHARACTERS.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 前缀匹配的正则, 以 ^ 开头且区分大小写时才能使用索引范围扫描, 加上 i 选项后需要扫描整个索引
+     *
+     * @param value 前缀
+     * @return 正则
+     */
+    public static String prefix(String value) {
+        return "^" + escape(value);
+    }
+
+    /**
+     * 反转文本, 用于维护反向字段实现后缀匹配
+     *
+     * @param value 原始文本
+     * @return 反转后的文本
+     */
+    public static String reverse(String value) {
+        return null == value ? null : new StringBuilder(value).reverse().toString();
+    }
+
+    /**
+     * 生成 n-gram, 用于维护 n-gram 字段实现包含匹配
+     *
+     * @param value 原始文本
+     * @param n     每个片段的长度
+     * @return 去重后的片段, 文本长度小于n时返回文本本身
+     */
+    public static Set<String> ngrams(String value, int n) {
+        Assert.isTrue(n > 0, "n 必须大于0");
+        Set<String> grams = new LinkedHashSet<>();
+        if (null == value || value.isEmpty()) {
+            return grams;
+        }
+        if (value.length() <= n) {
+            grams.add(value);
+            return grams;
+        }
+        for (int i = 0; i + n <= value.length(); i++) {
+            grams.add(value.substring(i, i + n));
+        }
+        return grams;
+    }
+}
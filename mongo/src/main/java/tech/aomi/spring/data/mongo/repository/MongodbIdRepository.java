@@ -1,60 +1,202 @@
 package tech.aomi.spring.data.mongo.repository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.Assert;
 import tech.aomi.spring.data.common.IdRepository;
+import tech.aomi.spring.data.common.SequenceBlock;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
  * @author Sean createAt 17-12-26.
  */
-public class MongodbIdRepository implements IdRepository {
+public class MongodbIdRepository implements IdRepository, InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongodbIdRepository.class);
 
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    /**
+     * 号段大小，每次从数据库预留的id数量。
+     * 大于1时启用号段模式，服务重启后未使用的id会被丢弃
+     */
+    private final long blockSize;
+
+    private final ConcurrentMap<String, AtomicReference<SequenceBlock>> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * 分片序列配置, key 为序列名称, value 为分片数量。
+     * 分片序列只保证唯一不保证递增, 第i个分片文档 sequence#i 只产生模分片数余i的值。
+     * 已有的序列不能直接改为分片模式, 否则会与已分配的值重复
+     */
+    private Map<String, Integer> stripes = Collections.emptyMap();
+
+    /**
+     * 查询监听, 记录每次从数据库预留序列的耗时
+     */
+    private QueryListener queryListener = QueryListener.NONE;
+
+    public MongodbIdRepository() {
+        this(1);
+    }
+
+    public MongodbIdRepository(long blockSize) {
+        Assert.isTrue(blockSize > 0, "blockSize 必须大于0");
+        this.blockSize = blockSize;
+    }
+
+    public MongodbIdRepository(MongoTemplate mongoTemplate, long blockSize) {
+        this(blockSize);
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            mongoTemplate.indexOps(DBSequence.class).ensureIndex(new Index().on("sequence", Sort.Direction.ASC).unique());
+        } catch (DataAccessException e) {
+            LOGGER.warn("DBSequence.sequence 唯一索引创建失败,请检查是否存在重复的序列: {}", e.getMessage());
+        }
+    }
+
     @Override
     public Long generateSequence(String sequenceName) {
-        return generateNoSqlSequence(sequenceName);
+        if (blockSize == 1) {
+            return reserve(sequenceName, 1).next();
+        }
+        return nextFromBlock(sequenceName);
+    }
+
+    @Override
+    public long[] generateSequences(String sequenceName, int count) {
+        Assert.isTrue(count > 0, "count 必须大于0");
+        SequenceBlock block = reserve(sequenceName, count);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = block.next();
+        }
+        return values;
     }
 
     @Override
     public void createSequence(String sequenceName) {
-        save(sequenceName);
+        int stripeCount = stripeCount(sequenceName);
+        if (stripeCount <= 1) {
+            save(sequenceName);
+            return;
+        }
+        for (int i = 0; i < stripeCount; i++) {
+            save(stripeName(sequenceName, i));
+        }
+    }
+
+    public void setStripes(Map<String, Integer> stripes) {
+        this.stripes = null == stripes ? Collections.emptyMap() : Map.copyOf(stripes);
+    }
+
+    public void setQueryListener(QueryListener queryListener) {
+        this.queryListener = null == queryListener ? QueryListener.NONE : queryListener;
+    }
+
+    private long nextFromBlock(String sequenceName) {
+        AtomicReference<SequenceBlock> holder = blocks.computeIfAbsent(sequenceName, k -> new AtomicReference<>(SequenceBlock.EMPTY));
+        for (; ; ) {
+            SequenceBlock block = holder.get();
+            long value = block.next();
+            if (value != SequenceBlock.EXHAUSTED) {
+                return value;
+            }
+            // 号段用完,只允许一个线程去数据库加载新号段
+            synchronized (holder) {
+                if (holder.get() == block) {
+                    holder.set(reserve(sequenceName, blockSize));
+                }
+            }
+        }
+    }
+
+    /**
+     * 从数据库预留count个值
+     *
+     * @param sequenceName 序列名称
+     * @param count        预留数量
+     * @return 预留的号段
+     */
+    private SequenceBlock reserve(String sequenceName, long count) {
+        int stripeCount = stripeCount(sequenceName);
+        if (stripeCount <= 1) {
+            long end = generateNoSqlSequence(sequenceName, count);
+            return new SequenceBlock(end - count + 1, end);
+        }
+        // 随机选择分片, 分散对同一文档的写竞争
+        int stripe = ThreadLocalRandom.current().nextInt(stripeCount);
+        long end = generateNoSqlSequence(stripeName(sequenceName, stripe), count);
+        return new SequenceBlock(end - count + 1, end, stripeCount, stripe);
+    }
+
+    private int stripeCount(String sequenceName) {
+        return stripes.getOrDefault(sequenceName, 1);
+    }
+
+    private static String stripeName(String sequenceName, int stripe) {
+        return sequenceName + "#" + stripe;
     }
 
-    private Long generateNoSqlSequence(String sequenceName) {
+    /**
+     * 序列值增加count, 序列不存在时自动创建
+     *
+     * @param sequenceName 序列名称
+     * @param count        增加的数量
+     * @return 增加后的序列值
+     */
+    private Long generateNoSqlSequence(String sequenceName, long count) {
         FindAndModifyOptions options = new FindAndModifyOptions();
         options.returnNew(true);
-        DBSequence seq = mongoTemplate.findAndModify(
-                new Query(Criteria.where("sequence").is(sequenceName)),
-                new Update().inc("value", 1L),
-                options,
-                DBSequence.class
-        );
-        if (null == seq) {
-            DBSequence init = save(sequenceName);
-            return init.getValue();
+        options.upsert(true);
+        Query query = new Query(Criteria.where("sequence").is(sequenceName));
+        Update update = new Update().inc("value", count);
+        long start = System.nanoTime();
+        DBSequence seq;
+        try {
+            seq = mongoTemplate.findAndModify(query, update, options, DBSequence.class);
+        } catch (DuplicateKeyException e) {
+            // 并发创建同一个序列时只有一个upsert能成功,另一个重试即可命中已存在的文档
+            seq = mongoTemplate.findAndModify(query, update, options, DBSequence.class);
         }
+        queryListener.onSequence(sequenceName, count, System.nanoTime() - start);
+        Assert.notNull(seq, "序列生成失败: " + sequenceName);
         return seq.getValue();
     }
 
-    private DBSequence save(String sequenceName) {
-        DBSequence exists = mongoTemplate.findOne(
-                new Query(Criteria.where("sequence").is(sequenceName)),
-                DBSequence.class
-        );
-        if (null == exists) {
-            DBSequence sequence = new DBSequence();
-            sequence.setSequence(sequenceName);
-            sequence.setValue(1L);
-            return mongoTemplate.insert(sequence);
+    private void save(String sequenceName) {
+        try {
+            mongoTemplate.upsert(
+                    new Query(Criteria.where("sequence").is(sequenceName)),
+                    new Update().setOnInsert("value", 1L),
+                    DBSequence.class
+            );
+        } catch (DuplicateKeyException ignored) {
+            // 已被其他节点创建
         }
-        return exists;
     }
 
 }
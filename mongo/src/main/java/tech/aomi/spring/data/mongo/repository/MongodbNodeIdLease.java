@@ -0,0 +1,168 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.Assert;
+import tech.aomi.spring.data.common.NodeIdLease;
+import tech.aomi.spring.data.common.SnowflakeIdRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于 mongodb 的雪花算法节点id租约。
+ * <p>
+ * 每个节点id对应 SnowflakeNode 集合中的一个文档 {_id: 节点id, owner: 持有者, expireAt: 过期时间},
+ * 文档不存在或已过期时通过 findAndModify 原子地抢占, 持有期间后台每 ttl/3 续期一次, 关闭时删除文档释放节点id。
+ * 所有节点id都被占用时抛出 {@link IllegalStateException}。
+ * <p>
+ * 过期时间使用本地时钟, 各实例之间的时钟偏差需要远小于 ttl
+ */
+public class MongodbNodeIdLease implements NodeIdLease {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongodbNodeIdLease.class);
+
+    public static final String COLLECTION = "SnowflakeNode";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final long ttlMillis;
+
+    /**
+     * 持有者标识, 进程名称加随机数, 同一进程内的多个租约也不相同
+     */
+    private final String owner;
+
+    private final long nodeId;
+
+    /**
+     * 租约的本地过期时间, 续期成功后延长
+     */
+    private volatile long expireAt;
+
+    /**
+     * 续期时发现节点id已被其他实例抢占, 或租约已释放
+     */
+    private volatile boolean lost;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler;
+
+    public MongodbNodeIdLease(MongoTemplate mongoTemplate, Duration ttl) {
+        Assert.notNull(mongoTemplate, "mongoTemplate 不能为null");
+        Assert.isTrue(null != ttl && ttl.toMillis() >= 1000, "ttl 不能小于1秒");
+        this.mongoTemplate = mongoTemplate;
+        this.ttlMillis = ttl.toMillis();
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        this.nodeId = claim();
+        LOGGER.info("租用雪花算法节点id: {}, 持有者: {}", nodeId, owner);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snowflake-node-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = ttlMillis / 3;
+        this.scheduler.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean isValid() {
+        return !lost && System.currentTimeMillis() < expireAt;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        lost = true;
+        scheduler.shutdownNow();
+        try {
+            mongoTemplate.remove(held(), COLLECTION);
+            LOGGER.info("释放雪花算法节点id: {}", nodeId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("释放雪花算法节点id {} 失败, 等待租约过期: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * 按节点id从小到大抢占第一个空闲的节点id
+     */
+    private long claim() {
+        Set<Long> held = new HashSet<>();
+        Query query = new Query(Criteria.where("expireAt").gt(new Date()));
+        query.fields().include("_id");
+        mongoTemplate.find(query, Document.class, COLLECTION).forEach(document -> held.add(((Number) document.get("_id")).longValue()));
+
+        for (long slot = 0; slot <= SnowflakeIdRepository.MAX_NODE_ID; slot++) {
+            if (!held.contains(slot) && tryClaim(slot)) {
+                return slot;
+            }
+        }
+        throw new IllegalStateException("没有空闲的雪花算法节点id, " + (SnowflakeIdRepository.MAX_NODE_ID + 1) + " 个节点id都已被租用");
+    }
+
+    /**
+     * 节点id的文档不存在或已过期时抢占, 文档被其他实例持有时 upsert 会因 _id 重复失败
+     */
+    private boolean tryClaim(long slot) {
+        long now = System.currentTimeMillis();
+        Query query = new Query(Criteria.where("_id").is(slot).and("expireAt").lte(new Date(now)));
+        Update update = new Update().set("owner", owner).set("expireAt", new Date(now + ttlMillis));
+        try {
+            Document document = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, COLLECTION);
+            if (null == document || !owner.equals(document.get("owner"))) {
+                return false;
+            }
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        expireAt = now + ttlMillis;
+        return true;
+    }
+
+    private void renew() {
+        if (lost) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            UpdateResult result = mongoTemplate.updateFirst(held(), new Update().set("expireAt", new Date(now + ttlMillis)), COLLECTION);
+            if (result.getMatchedCount() == 0) {
+                lost = true;
+                LOGGER.error("雪花算法节点id {} 已被其他实例抢占, 停止生成id", nodeId);
+                return;
+            }
+            expireAt = now + ttlMillis;
+        } catch (RuntimeException e) {
+            LOGGER.warn("雪花算法节点id {} 续期失败, 租约 {}ms 后过期: {}", nodeId, expireAt - System.currentTimeMillis(), e.getMessage());
+        }
+    }
+
+    private Query held() {
+        return new Query(Criteria.where("_id").is(nodeId).and("owner").is(owner));
+    }
+}
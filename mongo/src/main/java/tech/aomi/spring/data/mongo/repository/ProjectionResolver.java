@@ -0,0 +1,143 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 根据查询结果类型计算需要返回的字段。
+ * <p>
+ * 只处理没有 {@link Document} 注解的具体类(DTO、record), 实体类和抽象类型可能存在多态子类, 不做裁剪。
+ * 结果和嵌套对象都返回类型字段(默认 _class), 读取时仍能按实际类型创建对象; 类型映射不使用 _class 时,
+ * 存在已知子类的类型不做裁剪。结果按类型缓存
+ */
+class ProjectionResolver {
+
+    private static final int MAX_DEPTH = 5;
+
+    private static final String[] NONE = new String[0];
+
+    private static final String TYPE_KEY = "_class";
+
+    private final MongoConverter converter;
+
+    /**
+     * 类型字段, 类型映射不使用 _class 时为null
+     */
+    private final String typeKey;
+
+    private final Map<Class<?>, String[]> cache = new ConcurrentHashMap<>();
+
+    ProjectionResolver(MongoConverter converter) {
+        this.converter = converter;
+        this.typeKey = converter.getTypeMapper().isTypeKey(TYPE_KEY) ? TYPE_KEY : null;
+    }
+
+    /**
+     * 查询没有指定返回字段时, 根据结果类型设置返回字段
+     *
+     * @param query       查询条件
+     * @param resultClass 查询结果类型
+     */
+    void apply(Query query, Class<?> resultClass) {
+        if (!query.getFieldsObject().isEmpty()) {
+            return;
+        }
+        String[] fields = cache.computeIfAbsent(resultClass, this::resolve);
+        if (fields.length > 0) {
+            query.fields().include(fields);
+        }
+    }
+
+    private String[] resolve(Class<?> type) {
+        if (!isProjectable(type) || AnnotatedElementUtils.hasAnnotation(type, Document.class)) {
+            return NONE;
+        }
+        List<String> fields = new ArrayList<>();
+        Set<Class<?>> visiting = new HashSet<>();
+        if (!collect(type, "", 0, visiting, fields)) {
+            return NONE;
+        }
+        return fields.toArray(NONE);
+    }
+
+    /**
+     * @return 无法计算时返回false, 此时不裁剪字段
+     */
+    private boolean collect(Class<?> type, String prefix, int depth, Set<Class<?>> visiting, List<String> fields) {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext = converter.getMappingContext();
+        MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(type);
+        if (null == entity || (null == typeKey && hasSubtypes(type))) {
+            return false;
+        }
+        List<MongoPersistentProperty> properties = new ArrayList<>();
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) properties::add);
+        if (properties.stream().anyMatch(MongoPersistentProperty::isUnwrapped)) {
+            return false;
+        }
+        if (null != typeKey) {
+            fields.add(prefix + typeKey);
+        }
+        visiting.add(type);
+        try {
+            collectProperties(properties, prefix, depth, visiting, fields);
+        } finally {
+            visiting.remove(type);
+        }
+        return true;
+    }
+
+    private void collectProperties(List<MongoPersistentProperty> properties, String prefix, int depth, Set<Class<?>> visiting, List<String> fields) {
+        for (MongoPersistentProperty property : properties) {
+            String field = prefix + property.getFieldName();
+            Class<?> actualType = property.getActualType();
+            boolean nested = property.isEntity()
+                    && !property.isAssociation()
+                    && !property.isDbReference()
+                    && depth < MAX_DEPTH
+                    && isProjectable(actualType)
+                    && !visiting.contains(actualType);
+            if (!nested) {
+                fields.add(field);
+                continue;
+            }
+            List<String> nestedFields = new ArrayList<>();
+            if (collect(actualType, field + ".", depth + 1, visiting, nestedFields) && !nestedFields.isEmpty()) {
+                fields.addAll(nestedFields);
+            } else {
+                fields.add(field);
+            }
+        }
+    }
+
+    /**
+     * 映射上下文中是否存在该类型的子类
+     */
+    private boolean hasSubtypes(Class<?> type) {
+        return converter.getMappingContext().getPersistentEntities().stream()
+                .anyMatch(entity -> entity.getType() != type && type.isAssignableFrom(entity.getType()));
+    }
+
+    private boolean isProjectable(Class<?> type) {
+        return !type.isInterface()
+                && !Modifier.isAbstract(type.getModifiers())
+                && !Map.class.isAssignableFrom(type)
+                && !Collection.class.isAssignableFrom(type)
+                && !org.bson.Document.class.isAssignableFrom(type)
+                && !converter.getCustomConversions().isSimpleType(type);
+    }
+}
@@ -1,16 +1,23 @@
 package tech.aomi.spring.data.mongo.repository;
 
+import com.mongodb.ReadPreference;
 import lombok.Getter;
+import org.bson.Document;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Field;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -22,6 +29,9 @@ public class QueryBuilder {
     private final List<Criteria> criteria = new ArrayList<>();
     private final List<String> excludes = new ArrayList<>();
     private final List<String> includes = new ArrayList<>();
+    private TextCriteria textCriteria;
+    private final Set<String> scalarFields = new HashSet<>();
+    private final QueryOptions options = QueryOptions.options();
     private Sort sort;
     private Pageable pageable;
 
@@ -36,6 +46,16 @@ public class QueryBuilder {
         return new QueryBuilder();
     }
 
+    /**
+     * 查询模板的占位符, 参考 {@link #compile()}
+     *
+     * @param name 参数名称
+     * @return 占位符
+     */
+    public static QueryTemplate.Param param(String name) {
+        return new QueryTemplate.Param(name);
+    }
+
     public QueryBuilder is(String k, Object v) {
         this.criteria.add(Criteria.where(k).is(v));
         return this;
@@ -81,11 +101,47 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * 正则没有 ^ 锚点也不转义, 不能使用索引, 前缀匹配使用 {@link #startsWith(String, String)}
+     */
     public QueryBuilder rightLike(String key, String value) {
         this.criteria.add(Criteria.where(key).regex(value + ".*"));
         return this;
     }
 
+    /**
+     * 前缀匹配, 转义正则元字符并以 ^ 开头, 可以使用索引范围扫描
+     */
+    public QueryBuilder startsWith(String field, String value) {
+        this.criteria.add(CriteriaBuilder.instance.startsWith(field, value));
+        return this;
+    }
+
+    /**
+     * 后缀匹配, 在反向字段上做前缀匹配, 反向字段使用 {@link MatchText#reverse(String)} 维护
+     */
+    public QueryBuilder endsWith(String reversedField, String value) {
+        this.criteria.add(CriteriaBuilder.instance.endsWith(reversedField, value));
+        return this;
+    }
+
+    /**
+     * 包含匹配, 使用 n-gram 字段, 参考 {@link CriteriaBuilder#containsNgram(String, String, int)}
+     */
+    public QueryBuilder containsNgram(String ngramField, String value, int n) {
+        this.criteria.add(CriteriaBuilder.instance.containsNgram(ngramField, value, n));
+        return this;
+    }
+
+    /**
+     * 全文检索, 需要集合有 text 索引。
+     * $text 只能在查询顶层使用, 不包含在 {@link #buildCriteria()} 中
+     */
+    public QueryBuilder text(String... words) {
+        this.textCriteria = TextCriteria.forDefaultLanguage().matchingAny(words);
+        return this;
+    }
+
     public QueryBuilder gt(String field, Object v) {
         this.criteria.add(Criteria.where(field).gt(v));
         return this;
@@ -174,6 +230,74 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * 游标分页, 从续传令牌之后开始读取, 同时设置排序
+     *
+     * @param sort  排序, 自动追加 _id 作为唯一排序
+     * @param token 上一页的续传令牌, 为null时从第一条开始
+     * @return this
+     */
+    public QueryBuilder seek(Sort sort, String token) {
+        Sort keysetSort = Keyset.sort(sort);
+        if (null != token) {
+            this.criteria.add(Keyset.criteria(keysetSort, token));
+        }
+        this.sort = keysetSort;
+        return this;
+    }
+
+    /**
+     * 声明标量(非数组)字段。
+     * 标量字段上不同的等值条件、没有交集的范围条件视为矛盾, build() 返回 {@link UnsatisfiableQuery}。
+     * 字符串条件只在 collation(Collation.simple()) 时比较, 否则可能使用集合的默认排序规则
+     */
+    public QueryBuilder scalar(String... fields) {
+        this.scalarFields.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    public QueryBuilder readPreference(ReadPreference readPreference) {
+        this.options.readPreference(readPreference);
+        return this;
+    }
+
+    /**
+     * @param hedged 是否开启 hedged read, 不支持 primary
+     */
+    public QueryBuilder readPreference(ReadPreference readPreference, boolean hedged) {
+        this.options.readPreference(readPreference, hedged);
+        return this;
+    }
+
+    /**
+     * 服务端最大执行时间, 超时后服务端终止查询
+     */
+    public QueryBuilder maxTime(Duration maxTime) {
+        this.options.maxTime(maxTime);
+        return this;
+    }
+
+    /**
+     * 游标每批返回的数量
+     */
+    public QueryBuilder batchSize(int batchSize) {
+        this.options.batchSize(batchSize);
+        return this;
+    }
+
+    /**
+     * 索引提示, 索引名称或索引定义的 json
+     */
+    public QueryBuilder hint(String hint) {
+        this.options.hint(hint);
+        return this;
+    }
+
+    public QueryBuilder collation(Collation collation) {
+        this.options.collation(collation);
+        return this;
+    }
+
     public QueryBuilder page(Pageable pageable) {
         this.pageable = pageable;
 //        query.with(pageable);
@@ -185,13 +309,50 @@ public class QueryBuilder {
 //        return this;
 //    }
 
+    /**
+     * 构建规整后的查询条件, 参考 {@link CriteriaNormalizer}。不包含 $text 条件
+     */
     public Criteria buildCriteria() {
-        return new Criteria().andOperator(this.criteria.toArray(new Criteria[0]));
+        Document filter = normalize();
+        if (null == filter) {
+            return UnsatisfiableQuery.criteria();
+        }
+        return filter.isEmpty() ? new Criteria() : CriteriaNormalizer.toCriteria(filter);
+    }
+
+    /**
+     * @return 查询结构, 用于检查索引
+     */
+    public QueryShape shape() {
+        return QueryShape.of(build());
     }
 
+    /**
+     * 编译为查询模板, 条件值可以使用 {@link #param(String)} 占位, 查询时再绑定
+     *
+     * @return 查询模板
+     */
+    public QueryTemplate compile() {
+        return new QueryTemplate(build());
+    }
+
+    /**
+     * 构建查询, 条件先经过 {@link CriteriaNormalizer} 规整。
+     * 返回的查询与 {@link Query#addCriteria} 的行为一致, 再添加已有字段或 $and/$or/$nor 的条件时抛出异常;
+     * 条件互相矛盾时返回 {@link UnsatisfiableQuery}
+     */
     public Query build() {
-        var query = new Query();
-        criteria.forEach(query::addCriteria);
+        Document filter = normalize();
+        Query query;
+        if (null == filter) {
+            query = new UnsatisfiableQuery();
+        } else {
+            query = new Query();
+            CriteriaNormalizer.toTopLevelCriteria(filter).forEach(query::addCriteria);
+            if (null != textCriteria) {
+                query.addCriteria(textCriteria);
+            }
+        }
         Field f = query.fields();
         if (null != positionKey) {
             f.position(positionKey, positionValue);
@@ -204,9 +365,23 @@ public class QueryBuilder {
         if (null != pageable) {
             query.with(pageable);
         }
+        options.applyTo(query);
 
 
         return query;
     }
 
+    /**
+     * 合并范围条件、展开嵌套的 $and/$or、去掉重复条件。不包含 $text 条件
+     *
+     * @return 规整后的条件, 条件互相矛盾时返回null
+     */
+    private Document normalize() {
+        List<Document> clauses = new ArrayList<>(criteria.size());
+        criteria.forEach(c -> clauses.add(c.getCriteriaObject()));
+        Collation collation = options.getCollation();
+        boolean simpleCollation = null != collation && "simple".equals(collation.toDocument().get("locale"));
+        return CriteriaNormalizer.normalize(clauses, scalarFields, simpleCollation);
+    }
+
 }
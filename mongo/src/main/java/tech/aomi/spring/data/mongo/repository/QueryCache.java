@@ -0,0 +1,68 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个集合的查询结果缓存, 按访问顺序淘汰, 超过存活时间的结果视为失效
+ */
+class QueryCache {
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * 每次清空时加一, 查询前后版本不同说明期间有写入, 查询结果可能已经过期
+     */
+    private long generation;
+
+    QueryCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > QueryCache.this.maxSize;
+            }
+        };
+    }
+
+    synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (null == entry) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createAt > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 缓存查询结果
+     *
+     * @param generation 查询前的版本, 与当前版本不同时不缓存
+     */
+    synchronized void put(String key, Object value, long generation) {
+        if (generation == this.generation) {
+            entries.put(key, new Entry(value, System.nanoTime()));
+        }
+    }
+
+    synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    private record Entry(Object value, long createAt) {
+    }
+}
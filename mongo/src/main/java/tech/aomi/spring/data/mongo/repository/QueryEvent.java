@@ -0,0 +1,29 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+
+/**
+ * 查询信息
+ *
+ * @param operation      操作类型
+ * @param collectionName 集合名称
+ * @param query          查询条件, 字段名和值已按 documentClass 映射为文档中的字段名和类型, 与实际发送到服务端的一致
+ * @param documentClass  映射查询条件使用的实体Class, 可能为null
+ * @param nanos          耗时(纳秒)
+ * @param documents      返回的文档数量, count 操作为统计结果
+ */
+public record QueryEvent(Operation operation, String collectionName, Query query, @Nullable Class<?> documentClass, long nanos, long documents) {
+
+    public enum Operation {
+        COUNT,
+        FIND
+    }
+
+    /**
+     * @return 去掉具体值的查询结构
+     */
+    public String shape() {
+        return QueryShape.fingerprint(query);
+    }
+}
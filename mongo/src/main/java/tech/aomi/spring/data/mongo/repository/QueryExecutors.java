@@ -0,0 +1,59 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步查询使用的有界线程池。
+ * 查询会阻塞线程, 不能使用 ForkJoinPool.commonPool(); 线程和队列都有上限, 队列满时在调用线程执行
+ */
+public final class QueryExecutors {
+
+    private QueryExecutors() {
+    }
+
+    /**
+     * 创建有界线程池, 使用守护线程且空闲线程自动回收, 不需要随容器关闭
+     *
+     * @param name          线程名称前缀
+     * @param coreSize      核心线程数, 队列满之前最多使用的线程数
+     * @param maxSize       最大线程数
+     * @param queueCapacity 等待队列容量
+     * @param keepAlive     空闲线程存活时间
+     * @return 线程池
+     */
+    public static ThreadPoolExecutor bounded(String name, int coreSize, int maxSize, int queueCapacity, Duration keepAlive) {
+        Assert.isTrue(coreSize > 0 && maxSize >= coreSize, "线程数必须大于0且 maxSize 不能小于 coreSize");
+        Assert.isTrue(queueCapacity > 0, "queueCapacity 必须大于0");
+        AtomicInteger index = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(coreSize, maxSize, keepAlive.toMillis(), TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 没有指定线程池时共享的默认线程池
+     */
+    public static Executor shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static final class Shared {
+
+        private static final Executor INSTANCE = bounded("mongo-query", Math.max(4, Runtime.getRuntime().availableProcessors()),
+                Math.max(4, Runtime.getRuntime().availableProcessors()) * 4, 1000, Duration.ofSeconds(60));
+    }
+}
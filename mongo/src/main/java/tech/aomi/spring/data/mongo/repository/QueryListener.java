@@ -0,0 +1,57 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import java.util.List;
+
+/**
+ * 查询监听, 用于记录 DocumentRepository 和 MongodbIdRepository 访问数据库的耗时
+ */
+public interface QueryListener {
+
+    QueryListener NONE = new QueryListener() {
+    };
+
+    /**
+     * 一次查询完成
+     *
+     * @param event 查询信息
+     */
+    default void onQuery(QueryEvent event) {
+    }
+
+    /**
+     * 一次序列预留完成
+     *
+     * @param sequenceName 序列名称
+     * @param count        预留数量
+     * @param nanos        耗时(纳秒)
+     */
+    default void onSequence(String sequenceName, long count, long nanos) {
+    }
+
+    /**
+     * 组合多个监听
+     *
+     * @param listeners 监听列表
+     * @return 组合后的监听
+     */
+    static QueryListener composite(List<QueryListener> listeners) {
+        if (null == listeners || listeners.isEmpty()) {
+            return NONE;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        List<QueryListener> copy = List.copyOf(listeners);
+        return new QueryListener() {
+            @Override
+            public void onQuery(QueryEvent event) {
+                copy.forEach(listener -> listener.onQuery(event));
+            }
+
+            @Override
+            public void onSequence(String sequenceName, long count, long nanos) {
+                copy.forEach(listener -> listener.onSequence(sequenceName, count, nanos));
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.ReadPreferenceHedgeOptions;
+import com.mongodb.TaggableReadPreference;
+import lombok.Getter;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * 查询选项, 可以按集合配置默认值, 查询中已设置的选项优先
+ */
+@Getter
+public class QueryOptions {
+
+    /**
+     * 读偏好, 为null时使用 MongoTemplate 的配置
+     */
+    private ReadPreference readPreference;
+
+    /**
+     * 分页统计总数使用的读偏好, 为null时与查询相同。
+     * 可以把开销较大的 count 放到从节点执行
+     */
+    private ReadPreference countReadPreference;
+
+    /**
+     * 服务端最大执行时间, 超时后服务端终止查询
+     */
+    private Duration maxTime;
+
+    /**
+     * 游标每批返回的数量
+     */
+    private Integer batchSize;
+
+    /**
+     * 索引提示, 索引名称或索引定义的 json
+     */
+    private String hint;
+
+    /**
+     * 排序规则
+     */
+    private Collation collation;
+
+    private QueryOptions() {
+    }
+
+    public static QueryOptions options() {
+        return new QueryOptions();
+    }
+
+    public QueryOptions readPreference(ReadPreference readPreference) {
+        this.readPreference = readPreference;
+        return this;
+    }
+
+    /**
+     * @param readPreference 读偏好
+     * @param hedged         是否同时向两个从节点发送读请求并使用先返回的结果, 不支持 primary
+     */
+    public QueryOptions readPreference(ReadPreference readPreference, boolean hedged) {
+        this.readPreference = hedged ? hedged(readPreference) : readPreference;
+        return this;
+    }
+
+    public QueryOptions countReadPreference(ReadPreference countReadPreference) {
+        this.countReadPreference = countReadPreference;
+        return this;
+    }
+
+    public QueryOptions maxTime(Duration maxTime) {
+        this.maxTime = maxTime;
+        return this;
+    }
+
+    public QueryOptions batchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize 必须大于0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public QueryOptions hint(String hint) {
+        this.hint = hint;
+        return this;
+    }
+
+    public QueryOptions collation(Collation collation) {
+        this.collation = collation;
+        return this;
+    }
+
+    /**
+     * 把查询中未设置的选项设置为当前值
+     *
+     * @param query 查询条件
+     */
+    public void applyTo(Query query) {
+        if (null != readPreference && !query.hasReadPreference()) {
+            query.withReadPreference(readPreference);
+        }
+        if (null != maxTime && null == query.getMeta().getMaxTimeMsec()) {
+            query.maxTime(maxTime);
+        }
+        if (null != batchSize && null == query.getMeta().getCursorBatchSize()) {
+            query.cursorBatchSize(batchSize);
+        }
+        if (null != hint && null == query.getHint()) {
+            query.withHint(hint);
+        }
+        if (null != collation && query.getCollation().isEmpty()) {
+            query.collation(collation);
+        }
+    }
+
+    /**
+     * 开启 hedged read
+     *
+     * @param readPreference 读偏好, 不能为 primary
+     * @return 开启 hedged read 的读偏好
+     */
+    public static ReadPreference hedged(ReadPreference readPreference) {
+        Assert.isInstanceOf(TaggableReadPreference.class, readPreference, "primary 读偏好不支持 hedged read");
+        return ((TaggableReadPreference) readPreference).withHedgeOptions(ReadPreferenceHedgeOptions.builder().enabled(true).build());
+    }
+}
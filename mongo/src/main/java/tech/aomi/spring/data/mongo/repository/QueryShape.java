@@ -0,0 +1,171 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 查询结构, 包含等值字段、排序字段和范围字段
+ */
+@Getter
+@EqualsAndHashCode
+public final class QueryShape {
+
+    private static final String PLACEHOLDER = "?";
+
+    /**
+     * 等值查询字段, 包括 $eq 和 $in
+     */
+    private final Set<String> equality;
+
+    /**
+     * 排序字段, value 为 1 或 -1
+     */
+    private final Map<String, Integer> sort;
+
+    /**
+     * 范围查询字段, 包括 $gt/$lt/$ne/$regex 等
+     */
+    private final Set<String> range;
+
+    private QueryShape(Set<String> equality, Map<String, Integer> sort, Set<String> range) {
+        this.equality = Collections.unmodifiableSet(equality);
+        this.sort = Collections.unmodifiableMap(sort);
+        this.range = Collections.unmodifiableSet(range);
+    }
+
+    /**
+     * 解析查询结构, $or/$nor 分支中的字段不参与索引推荐
+     *
+     * @param query 查询条件
+     * @return 查询结构
+     */
+    public static QueryShape of(Query query) {
+        return of(query.getQueryObject(), query.getSortObject());
+    }
+
+    /**
+     * 解析查询结构
+     *
+     * @param filter 查询条件, 使用文档中的字段名
+     * @param sort   排序, 使用文档中的字段名
+     * @return 查询结构
+     */
+    public static QueryShape of(Document filter, Document sort) {
+        Set<String> equality = new LinkedHashSet<>();
+        Set<String> range = new LinkedHashSet<>();
+        collect(filter, equality, range);
+        range.removeAll(equality);
+
+        Map<String, Integer> sortKeys = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : sort.entrySet()) {
+            if (equality.contains(entry.getKey())) {
+                // 等值字段的排序不影响结果顺序
+                continue;
+            }
+            int direction = entry.getValue() instanceof Number number && number.intValue() < 0 ? -1 : 1;
+            sortKeys.put(entry.getKey(), direction);
+        }
+        return new QueryShape(equality, sortKeys, range);
+    }
+
+    private static void collect(Document filter, Set<String> equality, Set<String> range) {
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if ("$and".equals(key) && value instanceof List<?> list) {
+                for (Object item : list) {
+                    if (item instanceof Document document) {
+                        collect(document, equality, range);
+                    }
+                }
+            } else if (key.startsWith("$")) {
+                // $or/$nor/$text/$expr 等无法确定使用的索引
+                continue;
+            } else if (value instanceof Document document && isOperator(document)) {
+                if (document.size() == 1 && (document.containsKey("$eq") || document.containsKey("$in"))) {
+                    equality.add(key);
+                } else {
+                    range.add(key);
+                }
+            } else if (value instanceof Pattern) {
+                range.add(key);
+            } else {
+                equality.add(key);
+            }
+        }
+    }
+
+    private static boolean isOperator(Document document) {
+        return !document.isEmpty() && document.keySet().iterator().next().startsWith("$");
+    }
+
+    /**
+     * @return 是否没有任何查询和排序字段
+     */
+    public boolean isEmpty() {
+        return equality.isEmpty() && sort.isEmpty() && range.isEmpty();
+    }
+
+    /**
+     * 按 ESR(等值、排序、范围)顺序推荐的索引
+     *
+     * @return 索引字段, value 为 1 或 -1
+     */
+    public Map<String, Integer> recommendedIndex() {
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        equality.forEach(field -> keys.put(field, 1));
+        sort.forEach(keys::putIfAbsent);
+        range.forEach(field -> keys.putIfAbsent(field, 1));
+        return keys;
+    }
+
+    @Override
+    public String toString() {
+        return "{equality=" + equality + ", sort=" + sort + ", range=" + range + "}";
+    }
+
+    /**
+     * 生成去掉具体值的查询指纹, 相同结构的查询指纹相同
+     *
+     * @param query 查询条件
+     * @return 查询指纹
+     */
+    public static String fingerprint(Query query) {
+        Document shape = new Document("filter", strip(query.getQueryObject()));
+        Document sort = query.getSortObject();
+        if (!sort.isEmpty()) {
+            shape.append("sort", sort);
+        }
+        return shape.toJson();
+    }
+
+    private static Object strip(Object value) {
+        if (value instanceof Document document) {
+            Document result = new Document();
+            for (Map.Entry<String, Object> entry : document.entrySet()) {
+                String key = entry.getKey();
+                Object child = entry.getValue();
+                if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && child instanceof List<?> list) {
+                    List<Object> stripped = new ArrayList<>(list.size());
+                    list.forEach(item -> stripped.add(strip(item)));
+                    result.put(key, stripped);
+                } else {
+                    result.put(key, strip(child));
+                }
+            }
+            return result;
+        }
+        return PLACEHOLDER;
+    }
+}
@@ -0,0 +1,239 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.ReadPreference;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的查询模板。
+ * <p>
+ * 使用 {@link QueryBuilder#param(String)} 作为占位符构建查询, 调用 {@link QueryBuilder#compile()} 编译一次后,
+ * 每次查询只需要绑定参数。绑定时复制顶层 Document 和占位符所在路径上的 Document/List, 其它部分在各次查询间共享,
+ * 因此模板是不可变且线程安全的, 但不能修改绑定结果中嵌套的条件
+ */
+public final class QueryTemplate {
+
+    /**
+     * 占位符
+     *
+     * @param name 参数名称
+     */
+    public record Param(String name) {
+
+        public Param {
+            Assert.hasText(name, "参数名称不能为空");
+        }
+    }
+
+    private static final Set<String> ARRAY_OPERATORS = Set.of("$in", "$nin", "$all");
+
+    private final Document filter;
+
+    private final Document fields;
+
+    private final Document sort;
+
+    private final long skip;
+
+    private final int limit;
+
+    private final Collation collation;
+
+    private final String hint;
+
+    private final Long maxTimeMsec;
+
+    private final Integer cursorBatchSize;
+
+    private final ReadPreference readPreference;
+
+    /**
+     * 编译时条件已经矛盾, 绑定结果总是 {@link UnsatisfiableQuery}
+     */
+    private final boolean unsatisfiable;
+
+    /**
+     * 占位符位置, 为null时没有占位符
+     */
+    private final Node root;
+
+    private final Set<String> names;
+
+    QueryTemplate(Query query) {
+        this.filter = query.getQueryObject();
+        this.fields = query.getFieldsObject();
+        this.sort = query.getSortObject();
+        this.skip = query.getSkip();
+        this.limit = query.getLimit();
+        this.collation = query.getCollation().orElse(null);
+        this.hint = query.getHint();
+        this.maxTimeMsec = query.getMeta().getMaxTimeMsec();
+        this.cursorBatchSize = query.getMeta().getCursorBatchSize();
+        this.readPreference = query.hasReadPreference() ? query.getReadPreference() : null;
+        this.unsatisfiable = UnsatisfiableQuery.is(query);
+
+        Set<String> paramNames = new LinkedHashSet<>();
+        this.root = compile(filter, null, paramNames);
+        this.names = Collections.unmodifiableSet(paramNames);
+    }
+
+    /**
+     * @return 模板中的参数名称
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * 绑定参数生成查询, 模板中的读偏好、maxTime、batchSize、hint、collation 同样应用到查询
+     *
+     * @param params 参数, key 为参数名称
+     * @return 查询条件, 模板条件矛盾时返回 {@link UnsatisfiableQuery}
+     */
+    public Query bind(Map<String, ?> params) {
+        for (String name : names) {
+            Assert.isTrue(params.containsKey(name), "缺少查询参数: " + name);
+        }
+        if (unsatisfiable) {
+            // DocumentRepository 识别后不访问数据库, 其它查询选项没有意义
+            return new UnsatisfiableQuery();
+        }
+        // 顶层总是复制, 调用方对查询 addCriteria 时不能修改模板
+        Document boundFilter = null == root ? new Document(filter) : (Document) bind(filter, root, params);
+        BasicQuery query = new BasicQuery(boundFilter, new Document(fields));
+        query.setSortObject(new Document(sort));
+        query.skip(skip);
+        query.limit(limit);
+        if (null != collation) {
+            query.collation(collation);
+        }
+        if (null != hint) {
+            query.withHint(hint);
+        }
+        if (null != maxTimeMsec) {
+            query.maxTimeMsec(maxTimeMsec);
+        }
+        if (null != cursorBatchSize) {
+            query.cursorBatchSize(cursorBatchSize);
+        }
+        if (null != readPreference) {
+            query.withReadPreference(readPreference);
+        }
+        return query;
+    }
+
+    /**
+     * 绑定参数生成查询
+     *
+     * @param nameValues 参数名称和值交替排列, 如 "status", 1, "name", "abc"
+     * @return 查询条件
+     */
+    public Query bind(Object... nameValues) {
+        Assert.isTrue(nameValues.length % 2 == 0, "参数名称和值必须成对出现");
+        Map<String, Object> params = new HashMap<>(nameValues.length);
+        for (int i = 0; i < nameValues.length; i += 2) {
+            params.put((String) nameValues[i], nameValues[i + 1]);
+        }
+        return bind(params);
+    }
+
+    private static Object bind(Object source, Node node, Map<String, ?> params) {
+        if (null != node.param) {
+            Object value = params.get(node.param);
+            return node.spread ? spread(value) : value;
+        }
+        if (source instanceof Document document) {
+            Document copy = new Document(document);
+            node.children.forEach((key, child) -> copy.put((String) key, bind(document.get(key), child, params)));
+            return copy;
+        }
+        List<?> list = (List<?>) source;
+        List<Object> copy = new ArrayList<>(list);
+        node.children.forEach((index, child) -> copy.set((Integer) index, bind(list.get((Integer) index), child, params)));
+        return copy;
+    }
+
+    private static List<?> spread(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return new ArrayList<>(collection);
+        }
+        if (null != value && value.getClass().isArray()) {
+            // 包含基本类型数组, 如 long[]
+            return Arrays.asList(ObjectUtils.toObjectArray(value));
+        }
+        return Collections.singletonList(value);
+    }
+
+    /**
+     * 查找占位符位置
+     *
+     * @return 占位符所在的节点, 没有占位符时返回null
+     */
+    private static Node compile(Object value, String key, Set<String> names) {
+        if (value instanceof Param param) {
+            names.add(param.name());
+            return new Node(param.name(), false);
+        }
+        if (value instanceof Document document) {
+            Map<Object, Node> children = new HashMap<>();
+            document.forEach((k, v) -> {
+                Node child = compile(v, k, names);
+                if (null != child) {
+                    children.put(k, child);
+                }
+            });
+            return children.isEmpty() ? null : new Node(children);
+        }
+        if (value instanceof List<?> list) {
+            if (ARRAY_OPERATORS.contains(key) && list.size() == 1 && list.get(0) instanceof Param param) {
+                // $in(param("ids")) 绑定时使用整个集合替换数组
+                names.add(param.name());
+                return new Node(param.name(), true);
+            }
+            Map<Object, Node> children = new HashMap<>();
+            for (int i = 0; i < list.size(); i++) {
+                Node child = compile(list.get(i), null, names);
+                if (null != child) {
+                    children.put(i, child);
+                }
+            }
+            return children.isEmpty() ? null : new Node(children);
+        }
+        return null;
+    }
+
+    private static final class Node {
+
+        private final String param;
+
+        private final boolean spread;
+
+        private final Map<Object, Node> children;
+
+        private Node(String param, boolean spread) {
+            this.param = param;
+            this.spread = spread;
+            this.children = Collections.emptyMap();
+        }
+
+        private Node(Map<Object, Node> children) {
+            this.param = null;
+            this.spread = false;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+
+/**
+ * 基于 ReactiveMongoTemplate 的文档查询仓库。
+ * <p>
+ * 未设置游标批次大小时, 驱动根据下游请求的数量拉取数据, 遵循背压
+ */
+public class ReactiveDocumentRepositoryImpl implements ReactiveDocumentRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    /**
+     * 默认游标批次大小, 小于等于0时由下游请求数量决定
+     */
+    private int cursorBatchSize = 0;
+
+    public ReactiveDocumentRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public void setCursorBatchSize(int cursorBatchSize) {
+        this.cursorBatchSize = cursorBatchSize;
+    }
+
+    @Override
+    public <T> Flux<T> findAll(Query query, Class<T> documentClass) {
+        if (UnsatisfiableQuery.is(query)) {
+            return Flux.empty();
+        }
+        return this.mongoTemplate.find(prepare(query), documentClass);
+    }
+
+    @Override
+    public <T> Flux<T> findAll(Query query, Sort sort, Class<T> documentClass) {
+        return findAll(query, sort, documentClass, documentClass);
+    }
+
+    @Override
+    public <T> Flux<T> findAll(Query query, Sort sort, Class<T> resultClass, Class<?> documentClass) {
+        return findAll(query, sort, resultClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> Flux<T> findAll(Query query, Sort sort, Class<T> resultClass, String collectionName) {
+        if (UnsatisfiableQuery.is(query)) {
+            return Flux.empty();
+        }
+        query.with(sort);
+        return this.mongoTemplate.find(prepare(query), resultClass, collectionName);
+    }
+
+    @Override
+    public <T> Mono<Page<T>> findAll(Query query, Pageable pageable, Class<T> documentClass) {
+        return findPage(query, pageable, documentClass, documentClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> Mono<Page<T>> findAll(Query query, Pageable pageable, Class<T> resultClass, Class<?> documentClass) {
+        return findAll(query, pageable, resultClass, mongoTemplate.getCollectionName(documentClass));
+    }
+
+    @Override
+    public <T> Mono<Page<T>> findAll(Query query, Pageable pageable, Class<T> resultClass, String collectionName) {
+        return findPage(query, pageable, resultClass, null, collectionName);
+    }
+
+    private <T> Mono<Page<T>> findPage(Query query, Pageable pageable, Class<T> resultClass, @Nullable Class<?> documentClass, String collectionName) {
+        if (UnsatisfiableQuery.is(query)) {
+            Page<T> empty = null == pageable ? new PageImpl<>(new ArrayList<>()) : new PageImpl<>(new ArrayList<>(), pageable, 0);
+            return Mono.just(empty);
+        }
+        if (null == pageable) {
+            return this.mongoTemplate.find(prepare(query), resultClass, collectionName)
+                    .collectList()
+                    .map(PageImpl::new);
+        }
+        // count 不能带上分页的 skip/limit
+        Query countQuery = Query.of(query);
+        query.with(pageable);
+        return Mono.zip(
+                this.mongoTemplate.count(countQuery, documentClass, collectionName),
+                this.mongoTemplate.find(prepare(query), resultClass, collectionName).collectList()
+        ).map(tuple -> new PageImpl<>(tuple.getT2(), pageable, tuple.getT1()));
+    }
+
+    private Query prepare(Query query) {
+        if (cursorBatchSize > 0 && null == query.getMeta().getCursorBatchSize()) {
+            query.cursorBatchSize(cursorBatchSize);
+        }
+        return query;
+    }
+}
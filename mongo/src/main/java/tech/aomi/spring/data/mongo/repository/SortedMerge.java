@@ -0,0 +1,173 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 多个已排序结果的 k 路归并
+ */
+final class SortedMerge {
+
+    private SortedMerge() {
+    }
+
+    /**
+     * 归并多个已按 sort 排序的结果, 跳过 offset 条后最多返回 limit 条
+     *
+     * @param sources 各集合的查询结果, 每个结果已按 sort 排序
+     * @param sort    排序, 使用文档中的字段名, value 为 1 或 -1
+     * @param offset  跳过的数量
+     * @param limit   返回的最大数量, 小于0时不限制
+     * @return 归并后的结果
+     */
+    static List<Document> merge(List<List<Document>> sources, Document sort, long offset, int limit) {
+        Comparator<Document> comparator = comparator(sort);
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int c = comparator.compare(a.current(), b.current());
+            // 排序值相同时按集合顺序输出, 保证结果稳定
+            return c != 0 ? c : Integer.compare(a.source, b.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            if (!sources.get(i).isEmpty()) {
+                heap.add(new Cursor(i, sources.get(i)));
+            }
+        }
+
+        List<Document> result = new ArrayList<>(limit < 0 ? 16 : limit);
+        long skipped = 0;
+        while (!heap.isEmpty() && (limit < 0 || result.size() < limit)) {
+            Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(cursor.current());
+            }
+            if (++cursor.position < cursor.rows.size()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    static Comparator<Document> comparator(Document sort) {
+        List<List<String>> paths = new ArrayList<>(sort.size());
+        List<Boolean> ascending = new ArrayList<>(sort.size());
+        sort.forEach((field, direction) -> {
+            paths.add(List.of(field.split("\\.")));
+            ascending.add(!(direction instanceof Number number && number.intValue() < 0));
+        });
+        return (a, b) -> {
+            for (int i = 0; i < paths.size(); i++) {
+                List<String> path = paths.get(i);
+                int c = compareValues(a.getEmbedded(path, Object.class), b.getEmbedded(path, Object.class));
+                if (c != 0) {
+                    return ascending.get(i) ? c : -c;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * 按 BSON 比较规则比较两个值, 不同类型按类型顺序比较
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        int ta = typeOrder(a);
+        int tb = typeOrder(b);
+        if (ta != tb) {
+            return Integer.compare(ta, tb);
+        }
+        if (null == a) {
+            return 0;
+        }
+        if (a instanceof Number || a instanceof Decimal128) {
+            if (!isFinite(a) || !isFinite(b)) {
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            return decimal(a).compareTo(decimal(b));
+        }
+        if (a instanceof Comparable ca && a.getClass() == b.getClass()) {
+            return ca.compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static boolean isFinite(Object value) {
+        if (value instanceof Decimal128 decimal128) {
+            return !decimal128.isNaN() && !decimal128.isInfinite();
+        }
+        return !(value instanceof Double || value instanceof Float) || Double.isFinite(((Number) value).doubleValue());
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof Decimal128 decimal128) {
+            return decimal128.bigDecimalValue();
+        }
+        if (value instanceof BigDecimal bigDecimal) {
+            return bigDecimal;
+        }
+        if (value instanceof BigInteger bigInteger) {
+            return new BigDecimal(bigInteger);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        return BigDecimal.valueOf(((Number) value).longValue());
+    }
+
+    static int typeOrder(Object value) {
+        if (null == value) {
+            return 0;
+        }
+        if (value instanceof Number || value instanceof Decimal128) {
+            return 1;
+        }
+        if (value instanceof CharSequence) {
+            return 2;
+        }
+        if (value instanceof Document) {
+            return 3;
+        }
+        if (value instanceof List) {
+            return 4;
+        }
+        if (value instanceof ObjectId) {
+            return 5;
+        }
+        if (value instanceof Boolean) {
+            return 6;
+        }
+        if (value instanceof Date) {
+            return 7;
+        }
+        return 8;
+    }
+
+    private static final class Cursor {
+
+        private final int source;
+
+        private final List<Document> rows;
+
+        private int position;
+
+        private Cursor(int source, List<Document> rows) {
+            this.source = source;
+            this.rows = rows;
+        }
+
+        private Document current() {
+            return rows.get(position);
+        }
+    }
+}
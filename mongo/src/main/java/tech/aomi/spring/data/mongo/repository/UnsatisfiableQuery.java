@@ -0,0 +1,45 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * 条件互相矛盾、不会匹配任何数据的查询。
+ * DocumentRepository 遇到该查询时直接返回空结果, 不访问数据库;
+ * 直接交给 MongoTemplate 执行时条件为 {_id: {$in: []}}, 通过 _id 索引立即返回空结果
+ */
+public class UnsatisfiableQuery extends BasicQuery {
+
+    public UnsatisfiableQuery() {
+        super(new Document(Keyset.ID_FIELD, new Document("$in", List.of())));
+    }
+
+    /**
+     * 与不会匹配任何数据的条件 AND 连接后仍然不会匹配任何数据, 忽略新增的条件,
+     * 避免 BasicQuery 用新条件覆盖 _id 条件
+     */
+    @Override
+    public Query addCriteria(CriteriaDefinition criteriaDefinition) {
+        return this;
+    }
+
+    /**
+     * @param query 查询条件
+     * @return 是否为不会匹配任何数据的查询
+     */
+    public static boolean is(Query query) {
+        return query instanceof UnsatisfiableQuery;
+    }
+
+    /**
+     * @return 不会匹配任何数据的条件
+     */
+    static Criteria criteria() {
+        return Criteria.where(Keyset.ID_FIELD).in(List.of());
+    }
+}
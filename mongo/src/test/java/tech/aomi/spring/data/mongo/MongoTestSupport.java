@@ -0,0 +1,21 @@
+package tech.aomi.spring.data.mongo;
+
+import com.mongodb.client.MongoClients;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * 测试使用的 mongodb, 所有测试类共享一个容器, 进程退出时由 testcontainers 清理
+ */
+public abstract class MongoTestSupport {
+
+    private static final MongoDBContainer CONTAINER = new MongoDBContainer(DockerImageName.parse("mongo:6.0"));
+
+    protected static final MongoTemplate MONGO_TEMPLATE;
+
+    static {
+        CONTAINER.start();
+        MONGO_TEMPLATE = new MongoTemplate(MongoClients.create(CONTAINER.getReplicaSetUrl()), "test");
+    }
+}
@@ -0,0 +1,146 @@
+package tech.aomi.spring.data.mongo.codec;
+
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadModelCodecTest {
+
+    private final ReadModelCodecs codecs = new ReadModelCodecs();
+
+    private final ObjectId id = new ObjectId();
+
+    private final Document document = new Document("_id", id)
+            .append("no", "A001")
+            .append("amount", 1200L)
+            .append("price", new Decimal128(new BigDecimal("12.50")))
+            .append("createdAt", new Date(1700000000000L))
+            .append("status", "PAID")
+            .append("tags", List.of("a", "b"))
+            .append("lines", List.of(new Document("sku", "s1").append("quantity", 2), new Document("sku", "s2").append("quantity", 1)))
+            .append("buyer", new Document("name", "张三").append("vip", true))
+            .append("unknown", new Document("nested", List.of(1, 2)));
+
+    @Test
+    void decodesRecordsLikeMappingConverter() {
+        OrderView decoded = decode(OrderView.class, document);
+
+        assertEquals(id.toHexString(), decoded.id());
+        assertEquals("A001", decoded.orderNo());
+        assertEquals(new BigDecimal("12.50"), decoded.price());
+        assertEquals(List.of(new Line("s1", 2), new Line("s2", 1)), decoded.lines());
+        assertEquals(converter().read(OrderView.class, document), decoded);
+    }
+
+    @Test
+    void decodesClassesWithNoArgsConstructor() {
+        OrderBean decoded = decode(OrderBean.class, document);
+
+        assertEquals(id, decoded.id);
+        assertEquals("A001", decoded.no);
+        assertEquals(1200, decoded.amount);
+        assertEquals(Set.of("a", "b"), decoded.tags);
+        assertEquals("张三", decoded.buyer.name());
+        assertTrue(decoded.buyer.vip());
+    }
+
+    @Test
+    void nullAndMissingFieldsUseDefaults() {
+        OrderView decoded = decode(OrderView.class, new Document("_id", id).append("amount", null).append("buyer", null));
+
+        assertEquals(0L, decoded.amount());
+        assertNull(decoded.buyer());
+        assertNull(decoded.lines());
+    }
+
+    @Test
+    void skipsTransientFields() {
+        assertNull(decode(TransientView.class, new Document("name", "a").append("note", "b")).note());
+    }
+
+    @Test
+    void readsNumbersStoredWithOtherTypes() {
+        OrderView decoded = decode(OrderView.class, new Document("amount", 12.0).append("price", 3));
+
+        assertEquals(12L, decoded.amount());
+        assertEquals(BigDecimal.valueOf(3), decoded.price());
+    }
+
+    @Test
+    void rejectsUnsupportedModels() {
+        assertThrows(CodecConfigurationException.class, () -> codecs.codec(MapView.class));
+        assertThrows(UnsupportedOperationException.class, () -> codecs.codec(OrderView.class).encode(null, null, null));
+        assertTrue(codecs.supports(OrderView.class));
+        assertFalse(codecs.supports(Line.class));
+    }
+
+    private <T> T decode(Class<T> type, Document source) {
+        return codecs.codec(type).decode(new BsonDocumentReader(source.toBsonDocument()), DecoderContext.builder().build());
+    }
+
+    private static MappingMongoConverter converter() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    enum Status {
+        PAID
+    }
+
+    @ReadModel
+    record OrderView(@Id String id, @Field("no") String orderNo, long amount, BigDecimal price, Instant createdAt,
+                     Status status, List<String> tags, List<Line> lines, Buyer buyer) {
+    }
+
+    @ReadModel
+    record TransientView(String name, @Transient String note) {
+    }
+
+    record Line(String sku, int quantity) {
+    }
+
+    record Buyer(String name, boolean vip) {
+    }
+
+    @ReadModel
+    static class OrderBean {
+
+        ObjectId id;
+
+        String no;
+
+        int amount;
+
+        Set<String> tags;
+
+        Buyer buyer;
+    }
+
+    @ReadModel
+    record MapView(Map<String, Object> values) {
+    }
+}
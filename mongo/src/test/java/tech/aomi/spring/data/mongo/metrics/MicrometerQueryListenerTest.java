@@ -0,0 +1,91 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.repository.QueryEvent;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MicrometerQueryListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void recordsTimersAndDocumentsPerShape() {
+        MicrometerQueryListener listener = new MicrometerQueryListener(registry);
+        listener.onQuery(event(QueryEvent.Operation.FIND, Criteria.where("a").is(1), 3));
+        listener.onQuery(event(QueryEvent.Operation.FIND, Criteria.where("a").is(2), 5));
+        listener.onQuery(event(QueryEvent.Operation.COUNT, Criteria.where("a").is(1), 8));
+
+        // 只有值不同的查询属于同一个 shape
+        Timer find = registry.find("aomi.mongo.query").tag("operation", "find").timer();
+        assertEquals(2, find.count());
+        String shape = find.getId().getTag("shape");
+        assertEquals(1, registry.find("aomi.mongo.query").tag("operation", "count").tag("shape", shape).timer().count());
+
+        DistributionSummary documents = registry.find("aomi.mongo.query.documents").tag("shape", shape).summary();
+        assertEquals(2, documents.count());
+        assertEquals(8, documents.totalAmount());
+    }
+
+    @Test
+    void limitsShapeCardinality() {
+        MicrometerQueryListener listener = new MicrometerQueryListener(registry, 1);
+        listener.onQuery(event(QueryEvent.Operation.FIND, Criteria.where("a").is(1), 1));
+        listener.onQuery(event(QueryEvent.Operation.FIND, Criteria.where("b").is(1), 1));
+        listener.onQuery(event(QueryEvent.Operation.FIND, Criteria.where("c").gt(1), 1));
+
+        Set<String> shapes = registry.find("aomi.mongo.query").timers().stream()
+                .map(timer -> timer.getId().getTag("shape"))
+                .collect(Collectors.toSet());
+        assertEquals(2, shapes.size());
+        assertEquals(2, registry.find("aomi.mongo.query").tag("shape", MicrometerQueryListener.OTHER).timer().count());
+    }
+
+    @Test
+    void recordsSequenceReservations() {
+        new MicrometerQueryListener(registry).onSequence("order", 100, 1_000_000);
+
+        Timer timer = registry.find("aomi.mongo.sequence").tag("sequence", "order").timer();
+        assertEquals(1, timer.count());
+        assertNull(registry.find("aomi.mongo.query").timer());
+    }
+
+    @Test
+    void compositeNotifiesAllListeners() {
+        List<String> calls = new ArrayList<>();
+        QueryListener first = new QueryListener() {
+            @Override
+            public void onQuery(QueryEvent event) {
+                calls.add("first");
+            }
+        };
+        QueryListener second = new QueryListener() {
+            @Override
+            public void onQuery(QueryEvent event) {
+                calls.add("second");
+            }
+        };
+
+        assertSame(QueryListener.NONE, QueryListener.composite(List.of()));
+        assertSame(first, QueryListener.composite(List.of(first)));
+        QueryListener.composite(List.of(first, second)).onQuery(event(QueryEvent.Operation.FIND, Criteria.where("a").is(1), 1));
+        assertEquals(List.of("first", "second"), calls);
+    }
+
+    private static QueryEvent event(QueryEvent.Operation operation, Criteria criteria, long documents) {
+        return new QueryEvent(operation, "orders", new Query(criteria), null, 1_000_000, documents);
+    }
+}
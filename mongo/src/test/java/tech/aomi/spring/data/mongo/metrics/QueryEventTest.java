@@ -0,0 +1,90 @@
+package tech.aomi.spring.data.mongo.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+import tech.aomi.spring.data.mongo.repository.DocumentRepositoryImpl;
+import tech.aomi.spring.data.mongo.repository.QueryEvent;
+import tech.aomi.spring.data.mongo.repository.QueryListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryEventTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "EventItem";
+
+    private final List<QueryEvent> events = new CopyOnWriteArrayList<>();
+
+    private DocumentRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        MONGO_TEMPLATE.insert(new Item("1", "a"), COLLECTION);
+        repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+        repository.setQueryListener(new QueryListener() {
+            @Override
+            public void onQuery(QueryEvent event) {
+                events.add(event);
+            }
+        });
+    }
+
+    @Test
+    void eventsCarryMappedQueries() {
+        repository.findAll(new Query(Criteria.where("code").is("a")), Sort.unsorted(), Item.class, COLLECTION);
+        repository.findAfter(new Query(Criteria.where("code").is("a")), Sort.by("code"), null, 10, Item.class, COLLECTION);
+
+        assertEquals(2, events.size());
+        for (QueryEvent event : events) {
+            assertEquals(Item.class, event.documentClass());
+            assertTrue(event.query().getQueryObject().containsKey("c"), event.query().getQueryObject().toJson());
+        }
+        // find 和 findAfter 的条件部分得到相同的查询结构
+        QueryEvent find = events.get(0);
+        QueryEvent findAfter = events.get(1);
+        assertEquals(find.query().getQueryObject(), findAfter.query().getQueryObject());
+    }
+
+    @Test
+    void explainsEachShapeOncePerInterval() {
+        List<Runnable> tasks = new ArrayList<>();
+        SlowQueryExplainer explainer = new SlowQueryExplainer(MONGO_TEMPLATE, tasks::add, Duration.ofNanos(1), Duration.ofMinutes(1));
+        QueryEvent event = new QueryEvent(QueryEvent.Operation.FIND, COLLECTION, new Query(Criteria.where("c").is("a")), Item.class, 1_000_000, 1);
+        QueryEvent other = new QueryEvent(QueryEvent.Operation.FIND, COLLECTION, new Query(Criteria.where("c").gt("a")), Item.class, 1_000_000, 1);
+
+        explainer.onQuery(event);
+        explainer.onQuery(event);
+        explainer.onQuery(other);
+
+        assertEquals(2, tasks.size());
+        // explain 使用事件中已映射的条件
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void indexAdvisorUsesDocumentFieldNames() {
+        IndexAdvisor advisor = new IndexAdvisor(MONGO_TEMPLATE);
+        repository.setQueryListener(advisor);
+        repository.findAll(new Query(Criteria.where("code").is("a")), Sort.unsorted(), Item.class, COLLECTION);
+        advisor.record(COLLECTION, new Query(Criteria.where("code").is("a")), Item.class);
+
+        List<IndexAdvice> advices = advisor.report();
+        assertEquals(1, advices.size());
+        assertTrue(advices.get(0).shape().getEquality().contains("c"));
+    }
+
+    record Item(@Id String id, @Field("c") String code) {
+    }
+}
@@ -0,0 +1,88 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregationBuilderTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "AggregateItem";
+
+    private DocumentRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(new Document("_id", i).append("category", "c" + (i % 4)).append("amount", i));
+        }
+        MONGO_TEMPLATE.insert(documents, COLLECTION);
+        repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+    }
+
+    @Test
+    void buildsFacetPageWithOptions() {
+        Aggregation aggregation = AggregationBuilder.builder()
+                .match(QueryBuilder.builder().gte("amount", 1))
+                .allowDiskUse(true)
+                .maxTime(Duration.ofSeconds(3))
+                .buildPage(PageRequest.of(2, 5, Sort.by("amount")));
+
+        List<Document> pipeline = aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(3, pipeline.size());
+        assertEquals(new Document("$sort", new Document("amount", 1)), pipeline.get(1));
+        assertEquals(new Document("$facet", new Document(AggregationBuilder.ROWS, List.of(new Document("$skip", 10L), new Document("$limit", 5L)))
+                .append(AggregationBuilder.TOTAL, List.of(new Document("$count", AggregationBuilder.TOTAL)))), pipeline.get(2));
+        assertTrue(aggregation.getOptions().isAllowDiskUse());
+        assertEquals(Duration.ofSeconds(3), aggregation.getOptions().getMaxTime());
+    }
+
+    @Test
+    void statisticsRequireGroupOrBucket() {
+        assertThrows(IllegalStateException.class, () -> AggregationBuilder.builder().count("n"));
+        assertThrows(IllegalStateException.class, () -> AggregationBuilder.builder().unwind("tags").sum("amount", "total"));
+    }
+
+    @Test
+    void pagesGroupedResultsInOneRoundTrip() {
+        AggregationBuilder aggregation = AggregationBuilder.builder()
+                .group("category").sum("amount", "total").count("n");
+
+        Page<Document> page = repository.aggregatePage(aggregation, PageRequest.of(0, 3, Sort.by("_id")), Document.class, COLLECTION);
+        assertEquals(4, page.getTotalElements());
+        assertEquals(List.of("c0", "c1", "c2"), page.getContent().stream().map(row -> row.getString("_id")).toList());
+        // c0: 0 + 4 + 8
+        assertEquals(12, page.getContent().get(0).get("total", Number.class).intValue());
+        assertEquals(3, page.getContent().get(0).get("n", Number.class).intValue());
+
+        Page<Document> last = repository.aggregatePage(aggregation, PageRequest.of(1, 3, Sort.by("_id")), Document.class, COLLECTION);
+        assertEquals(List.of("c3"), last.getContent().stream().map(row -> row.getString("_id")).toList());
+    }
+
+    @Test
+    void emptyResultsHaveZeroTotal() {
+        AggregationBuilder aggregation = AggregationBuilder.builder().match(QueryBuilder.builder().gt("amount", 100));
+
+        Page<Document> page = repository.aggregatePage(aggregation, PageRequest.of(0, 3), Document.class, COLLECTION);
+        assertEquals(0, page.getTotalElements());
+        assertTrue(page.getContent().isEmpty());
+
+        Page<Document> unpaged = repository.aggregatePage(AggregationBuilder.builder(), Pageable.unpaged(), Document.class, COLLECTION);
+        assertEquals(10, unpaged.getContent().size());
+    }
+}
@@ -0,0 +1,115 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchLoaderTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "BatchItem";
+
+    private DocumentRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+    }
+
+    @Test
+    void mergesLoadsIntoBatches() {
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchLoader<Integer, String> loader = new BatchLoader<>(keys -> {
+            batches.add(keys);
+            return Map.of(1, "a", 2, "b", 3, "c");
+        }, 2, null, null);
+
+        CompletableFuture<String> first = loader.load(1);
+        assertSame(first, loader.load(1));
+        CompletableFuture<List<String>> many = loader.loadMany(List.of(2, 3, 4));
+        assertFalse(first.isDone());
+
+        loader.dispatch();
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4)), batches);
+        assertEquals("a", first.join());
+        assertEquals(List.of("b", "c"), many.join());
+        assertNull(loader.load(4).join());
+    }
+
+    @Test
+    void failedKeysCanBeReloaded() {
+        Function<List<Integer>, Map<Integer, String>> failing = keys -> {
+            throw new IllegalStateException("down");
+        };
+        List<Function<List<Integer>, Map<Integer, String>>> functions = new ArrayList<>(List.of(failing, keys -> Map.of(1, "a")));
+        BatchLoader<Integer, String> loader = new BatchLoader<>(keys -> functions.remove(0).apply(keys), 10, null, null);
+
+        CompletableFuture<String> future = loader.load(1);
+        loader.dispatch();
+        assertThrows(CompletionException.class, future::join);
+
+        CompletableFuture<String> retry = loader.load(1);
+        loader.dispatch();
+        assertEquals("a", retry.join());
+    }
+
+    @Test
+    void matchesObjectIdKeys() {
+        ObjectId id = new ObjectId();
+        MONGO_TEMPLATE.insert(new Document("_id", id).append("name", "a"), COLLECTION);
+        BatchLoader<String, Item> loader = repository.batchLoader(Item.class, COLLECTION, "id", 10, null);
+
+        CompletableFuture<Item> found = loader.load(id.toHexString());
+        CompletableFuture<Item> missing = loader.load(new ObjectId().toHexString());
+        loader.dispatch();
+
+        assertEquals("a", found.join().name());
+        assertNull(missing.join());
+    }
+
+    @Test
+    void matchesConvertedKeys() {
+        Instant time = Instant.parse("2024-01-01T00:00:00Z");
+        MONGO_TEMPLATE.insert(new Document("_id", new ObjectId()).append("name", "a").append("time", Date.from(time)), COLLECTION);
+        // Instant 映射为 Date 查询, 文档中读取的也是 Date
+        BatchLoader<Instant, Item> loader = repository.batchLoader(Item.class, COLLECTION, "time", 10, null);
+
+        CompletableFuture<Item> future = loader.load(time);
+        loader.dispatch();
+        assertEquals("a", future.join().name());
+    }
+
+    @Test
+    void matchesCompoundKeys() {
+        Document key = new Document("tenant", "t1").append("no", 1L);
+        MONGO_TEMPLATE.insert(new Document("_id", key).append("name", "a"), COLLECTION);
+        BatchLoader<Document, Document> loader = repository.batchLoader(Document.class, COLLECTION, "_id", 10, null);
+
+        CompletableFuture<Document> future = loader.load(new Document("tenant", "t1").append("no", 1L));
+        loader.dispatch();
+        assertTrue(future.isDone());
+        assertEquals("a", future.join().getString("name"));
+    }
+
+    record Item(@Id String id, String name, Instant time) {
+    }
+}
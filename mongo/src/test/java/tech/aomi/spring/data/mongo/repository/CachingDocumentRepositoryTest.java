@@ -0,0 +1,75 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.ReadPreference;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CachingDocumentRepositoryTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "CachedItem";
+
+    private CachingDocumentRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        repository = new CachingDocumentRepository(new DocumentRepositoryImpl(MONGO_TEMPLATE), MONGO_TEMPLATE);
+        repository.enable(COLLECTION, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void countStrategiesHaveValueSemantics() {
+        assertEquals(CountStrategy.capped(100), CountStrategy.capped(100));
+        assertEquals(CountStrategy.capped(100).toString(), CountStrategy.capped(100).toString());
+        assertNotEquals(CountStrategy.capped(100), CountStrategy.capped(200));
+        assertEquals("EXACT", CountStrategy.EXACT.toString());
+
+        Query query = new Query(Criteria.where("a").is(1));
+        PageRequest page = PageRequest.of(0, 10);
+        assertEquals(CachingDocumentRepository.doKey(query, page, CountStrategy.capped(100), Document.class),
+                CachingDocumentRepository.doKey(query, page, CountStrategy.capped(100), Document.class));
+    }
+
+    @Test
+    void keyIncludesQueryOptions() {
+        String plain = key(new Query(Criteria.where("a").is(1)));
+
+        assertNotEquals(plain, key(new Query(Criteria.where("a").is(1)).collation(Collation.of("zh"))));
+        assertNotEquals(plain, key(new Query(Criteria.where("a").is(1)).withHint("a_1")));
+        assertNotEquals(plain, key(new Query(Criteria.where("a").is(1)).withReadPreference(ReadPreference.secondary())));
+        assertNotEquals(plain, key(new Query(Criteria.where("a").is(1)).maxTime(Duration.ofSeconds(1))));
+        assertNotEquals(plain, key(new Query(Criteria.where("a").is(1)).cursorBatchSize(10)));
+        assertEquals(plain, key(new Query(Criteria.where("a").is(1))));
+    }
+
+    @Test
+    void servesCachedResultsUntilWrite() {
+        MONGO_TEMPLATE.insert(new Document("_id", 1).append("name", "a"), COLLECTION);
+        Query query = new Query(Criteria.where("name").is("a"));
+
+        assertEquals(1, repository.findAll(query, Sort.unsorted(), Document.class, COLLECTION).size());
+        // 绕过仓库写入, 缓存未失效
+        MONGO_TEMPLATE.insert(new Document("_id", 2).append("name", "a"), COLLECTION);
+        assertEquals(1, repository.findAll(query, Sort.unsorted(), Document.class, COLLECTION).size());
+
+        repository.insertAll(List.of(new Document("_id", 3).append("name", "a")), Document.class, COLLECTION, null);
+        assertEquals(3, repository.findAll(query, Sort.unsorted(), Document.class, COLLECTION).size());
+    }
+
+    private static String key(Query query) {
+        return CachingDocumentRepository.doKey(query, null, null, Document.class);
+    }
+}
@@ -0,0 +1,64 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CountStrategyTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "CountItem";
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(new Document("_id", i).append("even", i % 2 == 0));
+        }
+        MONGO_TEMPLATE.insert(documents, COLLECTION);
+    }
+
+    @Test
+    void exactCountsMatchingDocuments() {
+        assertEquals(5, CountStrategy.EXACT.count(MONGO_TEMPLATE, new Query(Criteria.where("even").is(true)), null, COLLECTION));
+    }
+
+    @Test
+    void estimatedUsesMetadataOnlyWithoutFilter() {
+        assertEquals(10, CountStrategy.ESTIMATED.count(MONGO_TEMPLATE, new Query(), null, COLLECTION));
+        assertEquals(5, CountStrategy.ESTIMATED.count(MONGO_TEMPLATE, new Query(Criteria.where("even").is(true)), null, COLLECTION));
+    }
+
+    @Test
+    void cappedStopsAfterLimit() {
+        assertEquals(4, CountStrategy.capped(3).count(MONGO_TEMPLATE, new Query(), null, COLLECTION));
+        assertEquals(5, CountStrategy.capped(10).count(MONGO_TEMPLATE, new Query(Criteria.where("even").is(true)), null, COLLECTION));
+        // 分页信息不影响统计
+        assertEquals(4, CountStrategy.capped(3).count(MONGO_TEMPLATE, new Query().skip(8).limit(1), null, COLLECTION));
+        assertThrows(IllegalArgumentException.class, () -> CountStrategy.capped(0));
+    }
+
+    @Test
+    void repositoryResolvesStrategyPerCallThenPerCollection() {
+        DocumentRepositoryImpl repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+        repository.setCountStrategies(Map.of(COLLECTION, CountStrategy.capped(5)));
+
+        Page<Document> collectionDefault = repository.findAll(new Query(), PageRequest.of(0, 2), Document.class, COLLECTION, null);
+        assertEquals(6, collectionDefault.getTotalElements());
+
+        Page<Document> perCall = repository.findAll(new Query(), PageRequest.of(0, 2), Document.class, COLLECTION, CountStrategy.EXACT);
+        assertEquals(10, perCall.getTotalElements());
+    }
+}
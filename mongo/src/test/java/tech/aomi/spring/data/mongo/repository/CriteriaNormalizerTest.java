@@ -0,0 +1,162 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.InvalidMongoDbApiUsageException;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CriteriaNormalizerTest {
+
+    private enum Status {
+        ACTIVE
+    }
+
+    @Test
+    void mergesRangesOnSameField() {
+        Query query = QueryBuilder.builder().gte("a", 1).lte("a", 5).gt("b", 1).gt("b", 3L).build();
+
+        assertEquals(new Document("a", new Document("$gte", 1).append("$lte", 5))
+                .append("b", new Document("$gt", 3L)), query.getQueryObject());
+    }
+
+    @Test
+    void mergesComparableDates() {
+        Instant from = Instant.parse("2023-01-01T00:00:00Z");
+        Instant later = from.plusSeconds(60);
+        Query query = QueryBuilder.builder().gte("createAt", from).gte("createAt", later).build();
+
+        assertEquals(new Document("createAt", new Document("$gte", later)), query.getQueryObject());
+    }
+
+    @Test
+    void keepsBoundsOfDifferentTypes() {
+        Instant instant = Instant.parse("2023-01-01T00:00:00Z");
+        LocalDateTime localDateTime = LocalDateTime.parse("2023-06-01T00:00:00");
+        Query query = QueryBuilder.builder().scalar("createAt").gte("createAt", instant).gte("createAt", localDateTime).build();
+
+        assertEquals(new Document("createAt", new Document("$gte", instant))
+                .append("$and", List.of(new Document("createAt", new Document("$gte", localDateTime)))), query.getQueryObject());
+    }
+
+    @Test
+    void keepsBigIntegerBounds() {
+        BigInteger large = BigInteger.ONE.shiftLeft(70);
+        Query query = QueryBuilder.builder().gt("a", large).gt("a", BigInteger.ONE).build();
+
+        assertEquals(new Document("a", new Document("$gt", large))
+                .append("$and", List.of(new Document("a", new Document("$gt", BigInteger.ONE)))), query.getQueryObject());
+    }
+
+    @Test
+    void idStringAndObjectIdAreNotContradiction() {
+        ObjectId id = new ObjectId();
+        Query query = QueryBuilder.builder().is("_id", id.toHexString()).is("_id", id).build();
+
+        assertFalse(UnsatisfiableQuery.is(query));
+    }
+
+    @Test
+    void enumAndStringAreNotContradiction() {
+        Query query = QueryBuilder.builder().scalar("status").is("status", Status.ACTIVE).is("status", "ACTIVE").build();
+
+        assertFalse(UnsatisfiableQuery.is(query));
+    }
+
+    @Test
+    void comparesStringsOnlyWithSimpleCollation() {
+        assertFalse(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("name").is("name", "a").is("name", "A").build()));
+        assertFalse(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("name").gt("name", "b").lt("name", "a").build()));
+        assertFalse(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("name").is("name", "a").is("name", "b")
+                .collation(Collation.of("zh")).build()));
+
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("name").is("name", "a").is("name", "A")
+                .collation(Collation.simple()).build()));
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("name").gt("name", "b").lt("name", "a")
+                .collation(Collation.simple()).build()));
+    }
+
+    @Test
+    void numericEqualityAcrossTypes() {
+        assertEquals(new Document("n", 1), QueryBuilder.builder().is("n", 1).is("n", 1L).build().getQueryObject());
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("n").is("n", 1).is("n", 2.5).build()));
+        // 数组字段可以同时包含两个值
+        assertEquals(new Document("n", 1).append("$and", List.of(new Document("n", 2))),
+                QueryBuilder.builder().is("n", 1).is("n", 2).build().getQueryObject());
+    }
+
+    @Test
+    void equalityOutsideBoundsOnScalarField() {
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().scalar("n").is("n", 1).gt("n", 5).build()));
+        assertEquals(new Document("n", 7), QueryBuilder.builder().scalar("n").is("n", 7).gt("n", 5).build().getQueryObject());
+    }
+
+    @Test
+    void mergesNotEqualsAndDetectsConflicts() {
+        assertEquals(new Document("a", new Document("$nin", List.of(1, 2, 3))),
+                QueryBuilder.builder().ne("a", 1).nin("a", 2, 3).build().getQueryObject());
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().is("a", 1).ne("a", 1).build()));
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().in("a", List.of()).build()));
+        assertTrue(UnsatisfiableQuery.is(QueryBuilder.builder().is("a", 1).exists("a", false).build()));
+    }
+
+    @Test
+    void flattensLogicalOperators() {
+        Query single = QueryBuilder.builder()
+                .or(new Criteria().andOperator(Criteria.where("a").is(1), Criteria.where("b").is(2)))
+                .build();
+        assertEquals(new Document("a", 1).append("b", 2), single.getQueryObject());
+
+        Query or = QueryBuilder.builder().is("c", 3).or(Criteria.where("a").is(1), Criteria.where("b").is(2)).build();
+        assertEquals(new Document("c", 3).append("$or", List.of(new Document("a", 1), new Document("b", 2))), or.getQueryObject());
+    }
+
+    @Test
+    void builtQueryRejectsDuplicateCriteria() {
+        Query query = QueryBuilder.builder().is("a", 1).or(Criteria.where("b").is(1), Criteria.where("c").is(1)).build();
+
+        assertThrows(InvalidMongoDbApiUsageException.class,
+                () -> query.addCriteria(new Criteria().orOperator(Criteria.where("d").is(1), Criteria.where("e").is(1))));
+        assertThrows(InvalidMongoDbApiUsageException.class, () -> query.addCriteria(Criteria.where("a").is(2)));
+
+        query.addCriteria(Criteria.where("f").is(1));
+        assertEquals(1, query.getQueryObject().get("f"));
+    }
+
+    @Test
+    void includesTextCriteria() {
+        Document filter = QueryBuilder.builder().is("a", 1).text("mongo").build().getQueryObject();
+
+        assertEquals(1, filter.get("a"));
+        assertTrue(filter.containsKey("$text"));
+    }
+
+    @Test
+    void unsatisfiableQueryIgnoresAddedCriteria() {
+        Query query = QueryBuilder.builder().in("a", List.of()).build();
+        query.addCriteria(Criteria.where("_id").is(1));
+
+        assertTrue(UnsatisfiableQuery.is(query));
+        assertEquals(new Document("_id", new Document("$in", List.of())), query.getQueryObject());
+    }
+
+    @Test
+    void keepsParamsUntouched() {
+        Query query = QueryBuilder.builder().gte("a", QueryBuilder.param("from")).gte("a", 1).build();
+
+        assertFalse(UnsatisfiableQuery.is(query));
+        assertTrue(query.getQueryObject().toString().contains("from"));
+    }
+}
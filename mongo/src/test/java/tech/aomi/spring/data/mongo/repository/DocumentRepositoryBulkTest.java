@@ -0,0 +1,111 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.WriteConcern;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分别测试通过 BulkOperations 和指定写关注时通过驱动执行的批量写入
+ */
+class DocumentRepositoryBulkTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "BulkItem";
+
+    private final DocumentRepository repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void insertsInBatchesAndCollectsFailures(boolean writeConcern) {
+        List<Item> items = List.of(new Item("1", "a", 1), new Item("2", "b", 2), new Item("1", "c", 3), new Item("3", "d", 4));
+
+        BulkResult result = repository.insertAll(items, Item.class, COLLECTION, options(writeConcern).batchSize(3));
+
+        assertEquals(3, result.getInsertedCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(2, result.getFailures().get(0).index());
+        assertEquals(11000, result.getFailures().get(0).code());
+        assertEquals(3, MONGO_TEMPLATE.count(new Query(), COLLECTION));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void orderedStopsAtFirstFailure(boolean writeConcern) {
+        List<Item> items = List.of(new Item("1", "a", 1), new Item("1", "b", 2), new Item("2", "c", 3), new Item("3", "d", 4));
+
+        BulkResult result = repository.insertAll(items, Item.class, COLLECTION, options(writeConcern).ordered(true).batchSize(2));
+
+        assertEquals(1, result.getInsertedCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(1, MONGO_TEMPLATE.count(new Query(), COLLECTION));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void upsertsByPropertyName(boolean writeConcern) {
+        repository.insertAll(List.of(new Item("1", "a", 1)), Item.class, COLLECTION, null);
+
+        // 不带 _id 的替换保留已存在文档的 _id
+        BulkResult result = repository.upsertAll(List.of(new Item(null, "a", 10), new Item(null, "b", 20)),
+                List.of("code"), Item.class, COLLECTION, options(writeConcern));
+
+        assertEquals(1, result.getMatchedCount());
+        assertEquals(1, result.getUpsertedCount());
+        Document stored = MONGO_TEMPLATE.findOne(new Query(Criteria.where("c").is("a")), Document.class, COLLECTION);
+        assertEquals("1", stored.get("_id"));
+        assertEquals(10, stored.get("amount"));
+        assertEquals(2, MONGO_TEMPLATE.count(new Query(), COLLECTION));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void rejectsNullKeysBeforeWriting(boolean writeConcern) {
+        assertThrows(IllegalArgumentException.class, () -> repository.upsertAll(List.of(new Item("1", "a", 1), new Item("2", null, 2)),
+                List.of("code"), Item.class, COLLECTION, options(writeConcern)));
+        assertEquals(0, MONGO_TEMPLATE.count(new Query(), COLLECTION));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void updatesAndDeletesByProperty(boolean writeConcern) {
+        repository.insertAll(List.of(new Item("1", "a", 1), new Item("2", "a", 2), new Item("3", "b", 3)), Item.class, COLLECTION, null);
+
+        BulkResult updated = repository.updateMulti(List.of(Pair.of(new Query(Criteria.where("code").is("a")), new Update().inc("amount", 100))),
+                Item.class, COLLECTION, options(writeConcern));
+        assertEquals(2, updated.getModifiedCount());
+        assertEquals(2, MONGO_TEMPLATE.count(new Query(Criteria.where("amount").gt(100)), COLLECTION));
+
+        BulkResult deleted = repository.deleteAll(List.of(new Query(Criteria.where("code").is("b"))), Item.class, COLLECTION, options(writeConcern));
+        assertEquals(1, deleted.getDeletedCount());
+        assertTrue(MONGO_TEMPLATE.exists(new Query(Criteria.where("c").is("a")), COLLECTION));
+        assertFalse(MONGO_TEMPLATE.exists(new Query(Criteria.where("c").is("b")), COLLECTION));
+    }
+
+    private static BulkOptions options(boolean writeConcern) {
+        BulkOptions options = BulkOptions.unordered();
+        return writeConcern ? options.writeConcern(WriteConcern.W1) : options;
+    }
+
+    record Item(@Id String id, @Field("c") String code, int amount) {
+    }
+}
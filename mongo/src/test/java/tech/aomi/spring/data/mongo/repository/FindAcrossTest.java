@@ -0,0 +1,80 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FindAcrossTest extends MongoTestSupport {
+
+    private static final List<String> COLLECTIONS = List.of("order_202402", "order_202401", "order_202312");
+
+    private DocumentRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        COLLECTIONS.forEach(MONGO_TEMPLATE::dropCollection);
+        MONGO_TEMPLATE.insert(List.of(new Order("a1", 1), new Order("a4", 4), new Order("a7", 7)), COLLECTIONS.get(0));
+        MONGO_TEMPLATE.insert(List.of(new Order("b2", 2), new Order("b5", 5)), COLLECTIONS.get(1));
+        // 第三个集合不存在, 按空集合处理
+        repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+    }
+
+    @Test
+    void mergesPagesAcrossCollections() {
+        Page<Order> page = repository.findAcross(new Query(), PageRequest.of(1, 2, Sort.by("amount")), Order.class, COLLECTIONS);
+
+        assertEquals(List.of("a4", "b5"), page.getContent().stream().map(Order::id).toList());
+        assertEquals(5, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+    }
+
+    @Test
+    void appliesFilterAndDescendingSort() {
+        Query query = new Query(Criteria.where("amount").gte(2));
+        Page<Order> page = repository.findAcross(query, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "amount")), Order.class, COLLECTIONS);
+
+        assertEquals(List.of(7, 5, 4, 2), page.getContent().stream().map(Order::amount).toList());
+        assertEquals(4, page.getTotalElements());
+    }
+
+    @Test
+    void unpagedReturnsAllRows() {
+        Query query = new Query().with(Sort.by("amount"));
+        Page<Order> page = repository.findAcross(query, null, Order.class, COLLECTIONS);
+
+        assertEquals(List.of(1, 2, 4, 5, 7), page.getContent().stream().map(Order::amount).toList());
+    }
+
+    @Test
+    void rejectsNonSimpleCollation() {
+        Query query = new Query().collation(Collation.of("zh"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findAcross(query, PageRequest.of(0, 2, Sort.by("amount")), Order.class, COLLECTIONS));
+    }
+
+    @Test
+    void partitionNamesAreNewestFirst() {
+        assertEquals(COLLECTIONS, CollectionPartitions.monthly("'order_'yyyyMM", YearMonth.of(2023, 12), YearMonth.of(2024, 2)));
+        assertEquals(List.of("log_20240101", "log_20231231"),
+                CollectionPartitions.daily("'log_'yyyyMMdd", LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 1)));
+    }
+
+    record Order(@Id String id, @Field("amt") int amount) {
+    }
+}
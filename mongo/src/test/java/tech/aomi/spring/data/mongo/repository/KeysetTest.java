@@ -0,0 +1,108 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "KeysetItem";
+
+    @Test
+    void tokenRoundTripKeepsBsonTypes() {
+        ObjectId id = new ObjectId();
+        Date time = new Date(1700000000123L);
+        Document row = new Document("_id", id)
+                .append("time", time)
+                .append("amount", new Decimal128(new BigDecimal("12.30")))
+                .append("version", 3L)
+                .append("level", 2)
+                .append("buyer", new Document("name", "张三"));
+        Sort sort = Keyset.sort(Sort.by("time", "amount", "version", "level", "buyer.name"));
+
+        Document keys = Keyset.decode(Keyset.encode(sort, row));
+        assertEquals(id, keys.get("_id"));
+        assertEquals(time, keys.get("time"));
+        assertEquals(new Decimal128(new BigDecimal("12.30")), keys.get("amount"));
+        assertEquals(3L, keys.get("version"));
+        assertEquals(2, keys.get("level"));
+        assertEquals("张三", keys.get("buyer.name"));
+    }
+
+    @Test
+    void sortEndsWithId() {
+        assertEquals(Sort.by("name").and(Sort.by("_id")), Keyset.sort(Sort.by("name")));
+        assertEquals(Sort.by("id", "name"), Keyset.sort(Sort.by("id", "name")));
+        assertEquals(Sort.by("_id"), Keyset.sort(null));
+    }
+
+    @Test
+    void criteriaSeeksPastLastRow() {
+        Sort sort = Keyset.sort(Sort.by(Sort.Direction.DESC, "time"));
+        String token = Keyset.encode(sort, new Document("_id", 5).append("time", 10));
+
+        assertEquals(new Document("$or", List.of(
+                new Document("time", new Document("$lt", 10)),
+                new Document("$and", List.of(new Document("time", 10), new Document("_id", new Document("$gt", 5)))))
+        ), Keyset.criteria(sort, token).getCriteriaObject());
+    }
+
+    @Test
+    void rejectsInvalidTokens() {
+        assertThrows(IllegalArgumentException.class, () -> Keyset.decode("not base64!"));
+        String token = Keyset.encode(Sort.by("_id"), new Document("_id", 1));
+        assertThrows(IllegalArgumentException.class, () -> Keyset.criteria(Keyset.sort(Sort.by("name")), token));
+    }
+
+    @Test
+    void findAfterPagesThroughMappedFields() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // 排序字段存在重复值, 依赖 _id 保证翻页不重不漏
+            items.add(new Item(null, i / 3));
+        }
+        MONGO_TEMPLATE.insert(items, COLLECTION);
+        DocumentRepositoryImpl repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+
+        List<Item> all = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            KeysetSlice<Item> slice = repository.findAfter(new Query(), Sort.by("rank"), token, 3, Item.class, COLLECTION);
+            all.addAll(slice.getContent());
+            token = slice.getNextToken();
+            pages++;
+        } while (null != token);
+
+        assertEquals(3, pages);
+        assertEquals(7, all.size());
+        assertEquals(7, all.stream().map(Item::id).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).rank() <= all.get(i).rank());
+        }
+        KeysetSlice<Item> last = repository.findAfter(new Query(), Sort.by("rank"), null, 10, Item.class, COLLECTION);
+        assertFalse(last.hasNext());
+        assertNull(last.getNextToken());
+    }
+
+    record Item(@Id String id, @Field("r") int rank) {
+    }
+}
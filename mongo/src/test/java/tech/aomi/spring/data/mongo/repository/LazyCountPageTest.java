@@ -0,0 +1,66 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LazyCountPageTest {
+
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private final LongSupplier count = () -> {
+        counts.incrementAndGet();
+        return 42;
+    };
+
+    @Test
+    void countsOnlyWhenTotalIsRead() {
+        Page<Integer> page = new LazyCountPage<>(List.of(1, 2), PageRequest.of(0, 2), true, count);
+        assertEquals(0, counts.get());
+
+        assertEquals(42, page.getTotalElements());
+        assertEquals(21, page.getTotalPages());
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    void lastPageDerivesTotal() {
+        Page<Integer> page = new LazyCountPage<>(List.of(1), PageRequest.of(2, 2), false, count);
+
+        assertEquals(5, page.getTotalElements());
+        assertEquals(0, counts.get());
+    }
+
+    @Test
+    void emptyFirstPageDerivesTotal() {
+        assertEquals(0, new LazyCountPage<>(List.of(), PageRequest.of(0, 2), false, count).getTotalElements());
+        assertEquals(1, new LazyCountPage<>(List.of(1), Pageable.unpaged(), false, count).getTotalElements());
+        assertEquals(0, counts.get());
+    }
+
+    @Test
+    void emptyPagePastTheEndCounts() {
+        Page<Integer> page = new LazyCountPage<>(List.of(), PageRequest.of(10, 2), false, count);
+
+        assertEquals(42, page.getTotalElements());
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    void mapKeepsComputedTotal() {
+        Page<Integer> page = new LazyCountPage<>(List.of(1, 2), PageRequest.of(0, 2), true, count);
+        page.getTotalElements();
+
+        Page<String> mapped = page.map(String::valueOf);
+        assertEquals(List.of("1", "2"), mapped.getContent());
+        assertEquals(42, mapped.getTotalElements());
+        assertEquals(1, counts.get());
+    }
+}
@@ -0,0 +1,77 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchTextTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "MatchItem";
+
+    @Test
+    void prefixEscapesMetaCharacters() {
+        String regex = MatchText.prefix("a.b(1)*");
+
+        assertEquals("^a\\.b\\(1\\)\\*", regex);
+        assertTrue(Pattern.compile(regex).matcher("a.b(1)*c").lookingAt());
+        assertFalse(Pattern.compile(regex).matcher("axb(1)*c").lookingAt());
+        assertFalse(Pattern.compile(regex).matcher("xa.b(1)*").lookingAt());
+    }
+
+    @Test
+    void reverseAndNgrams() {
+        assertEquals("cba", MatchText.reverse("abc"));
+        assertEquals(Set.of("ab", "bc", "cd"), MatchText.ngrams("abcd", 2));
+        assertEquals(Set.of("ab"), MatchText.ngrams("ab", 3));
+        assertTrue(MatchText.ngrams("", 2).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> MatchText.ngrams("abc", 0));
+    }
+
+    @Test
+    void buildersUseAnchoredRegex() {
+        Document startsWith = QueryBuilder.builder().startsWith("name", "ab").build().getQueryObject();
+        assertEquals("^ab", pattern(startsWith.get("name")));
+
+        Document endsWith = new Query(CriteriaBuilder.instance.endsWith("nameReversed", "yz")).getQueryObject();
+        assertEquals("^zy", pattern(endsWith.get("nameReversed")));
+
+        Document ngram = new Query(CriteriaBuilder.instance.containsNgram("grams", "abc", 2)).getQueryObject();
+        assertEquals(new Document("grams", new Document("$all", List.of("ab", "bc"))), ngram);
+        assertThrows(IllegalArgumentException.class, () -> CriteriaBuilder.instance.containsNgram("grams", "a", 2));
+    }
+
+    @Test
+    void prefixMatchUsesIndexRange() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        MONGO_TEMPLATE.insert(List.of(
+                new Document("name", "a.b1"),
+                new Document("name", "axb2"),
+                new Document("name", "ca.b3")
+        ), COLLECTION);
+        MONGO_TEMPLATE.indexOps(COLLECTION).ensureIndex(new Index().on("name", Sort.Direction.ASC));
+
+        Query query = QueryBuilder.builder().startsWith("name", "a.b").build();
+        List<Document> rows = MONGO_TEMPLATE.find(query, Document.class, COLLECTION);
+        assertEquals(List.of("a.b1"), rows.stream().map(row -> row.getString("name")).toList());
+
+        Document explain = MONGO_TEMPLATE.getCollection(COLLECTION).find(query.getQueryObject()).explain();
+        assertTrue(explain.toJson().contains("IXSCAN"), explain.toJson());
+    }
+
+    private static String pattern(Object regex) {
+        return regex instanceof Pattern pattern ? pattern.pattern() : ((BsonRegularExpression) regex).getPattern();
+    }
+}
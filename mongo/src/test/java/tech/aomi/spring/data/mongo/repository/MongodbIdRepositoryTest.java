@@ -0,0 +1,83 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.common.ConcurrentIds;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MongodbIdRepositoryTest extends MongoTestSupport {
+
+    private static final String SEQUENCE = "order";
+
+    private static final int INSTANCES = 4;
+
+    private static final int THREADS = 16;
+
+    private static final int ROUNDS = 500;
+
+    private static final int STRIPES = 4;
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(DBSequence.class);
+    }
+
+    /**
+     * 多个实例、多个线程同时取号, 号段很小以保证反复从数据库补充, 所有值都不能重复
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7})
+    void concurrentInstancesNeverDuplicate(long blockSize) throws Exception {
+        List<MongodbIdRepository> repositories = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            MongodbIdRepository repository = new MongodbIdRepository(MONGO_TEMPLATE, blockSize);
+            repository.afterPropertiesSet();
+            repositories.add(repository);
+        }
+
+        Set<Long> values = generateConcurrently(repositories);
+
+        assertEquals(THREADS * ROUNDS * 4, values.size());
+    }
+
+    /**
+     * 分片序列的各个分片交错取值, 多实例并发时也不能重复
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7})
+    void stripedSequenceNeverDuplicates(long blockSize) throws Exception {
+        List<MongodbIdRepository> repositories = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            MongodbIdRepository repository = new MongodbIdRepository(MONGO_TEMPLATE, blockSize);
+            repository.setStripes(Map.of(SEQUENCE, STRIPES));
+            repository.afterPropertiesSet();
+            repositories.add(repository);
+        }
+        repositories.get(0).createSequence(SEQUENCE);
+        for (int i = 0; i < STRIPES; i++) {
+            assertTrue(MONGO_TEMPLATE.exists(new Query(Criteria.where("sequence").is(SEQUENCE + "#" + i)), DBSequence.class));
+        }
+
+        Set<Long> values = generateConcurrently(repositories);
+
+        assertEquals(THREADS * ROUNDS * 4, values.size());
+        // 每个分片都被使用过
+        assertEquals(STRIPES, values.stream().map(v -> v % STRIPES).distinct().count());
+    }
+
+    private static Set<Long> generateConcurrently(List<MongodbIdRepository> repositories) throws Exception {
+        // 每轮取 1 个单值和 3 个批量值
+        return ConcurrentIds.generate(repositories, SEQUENCE, THREADS, ROUNDS, 3);
+    }
+}
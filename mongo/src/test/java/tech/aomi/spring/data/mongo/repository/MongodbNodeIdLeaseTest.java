@@ -0,0 +1,134 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import tech.aomi.spring.data.common.SnowflakeIdRepository;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MongodbNodeIdLeaseTest extends MongoTestSupport {
+
+    private static final Duration TTL = Duration.ofSeconds(3);
+
+    @BeforeEach
+    void setUp() {
+        MONGO_TEMPLATE.dropCollection(MongodbNodeIdLease.COLLECTION);
+    }
+
+    @Test
+    void leasesDistinctNodeIds() {
+        List<MongodbNodeIdLease> leases = new ArrayList<>();
+        try {
+            Set<Long> nodeIds = new HashSet<>();
+            for (int i = 0; i < 5; i++) {
+                MongodbNodeIdLease lease = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+                leases.add(lease);
+                assertTrue(lease.isValid());
+                assertTrue(nodeIds.add(lease.getNodeId()), "重复的节点id: " + lease.getNodeId());
+            }
+        } finally {
+            leases.forEach(MongodbNodeIdLease::close);
+        }
+    }
+
+    @Test
+    void closeReleasesNodeId() {
+        MongodbNodeIdLease first = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        long nodeId = first.getNodeId();
+        first.close();
+        assertFalse(first.isValid());
+        assertFalse(MONGO_TEMPLATE.exists(new Query(Criteria.where("_id").is(nodeId)), MongodbNodeIdLease.COLLECTION));
+
+        MongodbNodeIdLease second = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        try {
+            assertEquals(nodeId, second.getNodeId());
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    void heartbeatExtendsLease() throws InterruptedException {
+        MongodbNodeIdLease lease = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        try {
+            Date claimed = expireAt(lease.getNodeId());
+            Thread.sleep(TTL.toMillis() + 500);
+            assertTrue(lease.isValid());
+            assertTrue(expireAt(lease.getNodeId()).after(claimed));
+        } finally {
+            lease.close();
+        }
+    }
+
+    @Test
+    void takesOverExpiredNodeId() {
+        MONGO_TEMPLATE.insert(new Document("_id", 0L).append("owner", "crashed").append("expireAt", new Date(System.currentTimeMillis() - 1000)),
+                MongodbNodeIdLease.COLLECTION);
+        MongodbNodeIdLease lease = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        try {
+            assertEquals(0, lease.getNodeId());
+        } finally {
+            lease.close();
+        }
+    }
+
+    @Test
+    void detectsLostLease() throws InterruptedException {
+        MongodbNodeIdLease lease = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        try {
+            MONGO_TEMPLATE.updateFirst(new Query(Criteria.where("_id").is(lease.getNodeId())),
+                    new Update().set("owner", "other"), MongodbNodeIdLease.COLLECTION);
+            // 等待下一次续期发现节点id已被抢占
+            Thread.sleep(TTL.toMillis() / 3 + 1000);
+            assertFalse(lease.isValid());
+        } finally {
+            lease.close();
+        }
+        // 释放时不能删除其他实例持有的文档
+        assertTrue(MONGO_TEMPLATE.exists(new Query(Criteria.where("owner").is("other")), MongodbNodeIdLease.COLLECTION));
+    }
+
+    @Test
+    void failsWhenNoNodeIdIsFree() {
+        Date expireAt = new Date(System.currentTimeMillis() + 60000);
+        List<Document> documents = new ArrayList<>();
+        for (long i = 0; i <= SnowflakeIdRepository.MAX_NODE_ID; i++) {
+            documents.add(new Document("_id", i).append("owner", "other").append("expireAt", expireAt));
+        }
+        MONGO_TEMPLATE.getCollection(MongodbNodeIdLease.COLLECTION).insertMany(documents);
+
+        assertThrows(IllegalStateException.class, () -> new MongodbNodeIdLease(MONGO_TEMPLATE, TTL));
+    }
+
+    @Test
+    void snowflakeRepositoryReleasesLeaseOnDestroy() {
+        MongodbNodeIdLease lease = new MongodbNodeIdLease(MONGO_TEMPLATE, TTL);
+        SnowflakeIdRepository repository = new SnowflakeIdRepository(lease);
+        assertEquals(lease.getNodeId(), repository.getNodeId());
+        repository.generateSequence("order");
+
+        repository.destroy();
+        assertThrows(IllegalStateException.class, () -> repository.generateSequence("order"));
+        assertFalse(MONGO_TEMPLATE.exists(new Query(Criteria.where("_id").is(lease.getNodeId())), MongodbNodeIdLease.COLLECTION));
+    }
+
+    private static Date expireAt(long nodeId) {
+        Document document = MONGO_TEMPLATE.findOne(new Query(Criteria.where("_id").is(nodeId)), Document.class, MongodbNodeIdLease.COLLECTION);
+        return document.getDate("expireAt");
+    }
+}
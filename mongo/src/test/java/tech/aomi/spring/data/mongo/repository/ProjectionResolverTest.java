@@ -0,0 +1,96 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.Unwrapped;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionResolverTest {
+
+    @Test
+    void includesFieldsAndTypeKeys() {
+        Query query = new Query();
+        new ProjectionResolver(converter(true)).apply(query, OrderView.class);
+
+        assertEquals(new Document("_class", 1).append("no", 1).append("buyer._class", 1).append("buyer.name", 1).append("lines", 1),
+                query.getFieldsObject());
+    }
+
+    @Test
+    void explicitFieldsTakePrecedence() {
+        Query query = new Query();
+        query.fields().include("no");
+        new ProjectionResolver(converter(true)).apply(query, OrderView.class);
+
+        assertEquals(new Document("no", 1), query.getFieldsObject());
+    }
+
+    @Test
+    void skipsUnwrappedProperties() {
+        Query query = new Query();
+        ProjectionResolver resolver = new ProjectionResolver(converter(true));
+        resolver.apply(query, UnwrappedView.class);
+        assertTrue(query.getFieldsObject().isEmpty());
+
+        // 嵌套对象包含 @Unwrapped 时返回整个嵌套字段
+        Query nested = new Query();
+        resolver.apply(nested, NestedUnwrappedView.class);
+        assertEquals(new Document("_class", 1).append("first", 1).append("second", 1), nested.getFieldsObject());
+    }
+
+    @Test
+    void skipsTypesWithKnownSubtypesWithoutTypeKey() {
+        MappingMongoConverter converter = converter(false);
+        converter.getMappingContext().getPersistentEntity(SpecialBuyer.class);
+
+        Query query = new Query();
+        new ProjectionResolver(converter).apply(query, OrderView.class);
+
+        assertEquals(new Document("no", 1).append("buyer", 1).append("lines", 1), query.getFieldsObject());
+    }
+
+    private static MappingMongoConverter converter(boolean typeKey) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        if (!typeKey) {
+            converter.setTypeMapper(new DefaultMongoTypeMapper(null));
+        }
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    record OrderView(@Field("no") String orderNo, Buyer buyer, List<String> lines) {
+    }
+
+    static class Buyer {
+
+        String name;
+    }
+
+    static class SpecialBuyer extends Buyer {
+
+        String level;
+    }
+
+    record Address(String city) {
+    }
+
+    record UnwrappedView(String name, @Unwrapped.Nullable Address address) {
+    }
+
+    record Holder(String name, @Unwrapped.Nullable Address address) {
+    }
+
+    record NestedUnwrappedView(Holder first, Holder second) {
+    }
+}
@@ -0,0 +1,95 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Query;
+import tech.aomi.spring.data.mongo.MongoTestSupport;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryOptionsTest extends MongoTestSupport {
+
+    private static final String COLLECTION = "OptionItem";
+
+    @Test
+    void fillsOnlyUnsetOptions() {
+        QueryOptions options = QueryOptions.options()
+                .readPreference(ReadPreference.secondaryPreferred())
+                .maxTime(Duration.ofSeconds(2))
+                .batchSize(100)
+                .hint("a_1")
+                .collation(Collation.of("zh"));
+
+        Query empty = new Query();
+        options.applyTo(empty);
+        assertEquals(ReadPreference.secondaryPreferred(), empty.getReadPreference());
+        assertEquals(2000L, empty.getMeta().getMaxTimeMsec());
+        assertEquals(100, empty.getMeta().getCursorBatchSize());
+        assertEquals("a_1", empty.getHint());
+        assertEquals("zh", empty.getCollation().orElseThrow().getLocale().asString());
+
+        Query query = new Query().withReadPreference(ReadPreference.primary()).maxTimeMsec(10).cursorBatchSize(5).withHint("b_1");
+        options.applyTo(query);
+        assertEquals(ReadPreference.primary(), query.getReadPreference());
+        assertEquals(10L, query.getMeta().getMaxTimeMsec());
+        assertEquals(5, query.getMeta().getCursorBatchSize());
+        assertEquals("b_1", query.getHint());
+    }
+
+    @Test
+    void hedgedReadsRequireSecondaryPreference() {
+        ReadPreference hedged = QueryOptions.hedged(ReadPreference.nearest());
+        assertTrue(((TaggableReadPreference) hedged).getHedgeOptions().isEnabled());
+        assertThrows(IllegalArgumentException.class, () -> QueryOptions.hedged(ReadPreference.primary()));
+        assertThrows(IllegalArgumentException.class, () -> QueryOptions.options().batchSize(0));
+    }
+
+    @Test
+    void builderAndTemplateCarryOptions() {
+        QueryBuilder builder = QueryBuilder.builder()
+                .is("status", QueryBuilder.param("status"))
+                .readPreference(ReadPreference.secondary())
+                .maxTime(Duration.ofMillis(500))
+                .batchSize(20)
+                .hint("status_1");
+
+        for (Query query : List.of(builder.build(), builder.compile().bind("status", 1))) {
+            assertEquals(ReadPreference.secondary(), query.getReadPreference());
+            assertEquals(500L, query.getMeta().getMaxTimeMsec());
+            assertEquals(20, query.getMeta().getCursorBatchSize());
+            assertEquals("status_1", query.getHint());
+        }
+    }
+
+    @Test
+    void countUsesCountReadPreference() {
+        MONGO_TEMPLATE.dropCollection(COLLECTION);
+        MONGO_TEMPLATE.insert(new Document("_id", 1), COLLECTION);
+        List<ReadPreference> countPreferences = new CopyOnWriteArrayList<>();
+        CountStrategy capture = (mongoTemplate, query, documentClass, collectionName) -> {
+            countPreferences.add(query.getReadPreference());
+            return CountStrategy.EXACT.count(mongoTemplate, query, documentClass, collectionName);
+        };
+        DocumentRepositoryImpl repository = new DocumentRepositoryImpl(MONGO_TEMPLATE);
+        repository.setQueryOptions(Map.of(COLLECTION, QueryOptions.options()
+                .readPreference(ReadPreference.primaryPreferred())
+                .countReadPreference(ReadPreference.secondaryPreferred())));
+
+        repository.findAll(new Query(), PageRequest.of(0, 10), Document.class, COLLECTION, capture);
+        // 调用方指定的读偏好优先
+        repository.findAll(new Query().withReadPreference(ReadPreference.primary()), PageRequest.of(0, 10), Document.class, COLLECTION, capture);
+
+        assertEquals(List.of(ReadPreference.secondaryPreferred(), ReadPreference.primary()), countPreferences);
+    }
+}
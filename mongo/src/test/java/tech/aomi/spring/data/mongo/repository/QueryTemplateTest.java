@@ -0,0 +1,66 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tech.aomi.spring.data.mongo.repository.QueryBuilder.param;
+
+class QueryTemplateTest {
+
+    @Test
+    void bindsParams() {
+        QueryTemplate template = QueryBuilder.builder()
+                .is("status", param("status"))
+                .in("id", param("ids"))
+                .sort(Sort.by("name"))
+                .compile();
+        assertEquals(Set.of("status", "ids"), template.getNames());
+
+        Query query = template.bind("status", 1, "ids", List.of("a", "b"));
+        assertEquals(new Document("status", 1).append("id", new Document("$in", List.of("a", "b"))), query.getQueryObject());
+        assertEquals(new Document("name", 1), query.getSortObject());
+    }
+
+    @Test
+    void spreadsArrays() {
+        QueryTemplate template = QueryBuilder.builder().in("id", param("ids")).compile();
+
+        assertEquals(new Document("id", new Document("$in", List.of(1L, 2L))), template.bind("ids", new long[]{1, 2}).getQueryObject());
+        assertEquals(new Document("id", new Document("$in", List.of(1, 2))), template.bind("ids", new int[]{1, 2}).getQueryObject());
+        assertEquals(new Document("id", new Document("$in", List.of("a"))), template.bind("ids", (Object) new String[]{"a"}).getQueryObject());
+        assertEquals(new Document("id", new Document("$in", List.of("a"))), template.bind("ids", "a").getQueryObject());
+    }
+
+    @Test
+    void bindingDoesNotModifyTemplate() {
+        QueryTemplate template = QueryBuilder.builder().is("status", param("status")).compile();
+
+        Query first = template.bind("status", 1);
+        first.addCriteria(Criteria.where("name").is("a"));
+        assertEquals(new Document("status", 2), template.bind("status", 2).getQueryObject());
+    }
+
+    @Test
+    void requiresAllParams() {
+        QueryTemplate template = QueryBuilder.builder().is("status", param("status")).compile();
+
+        assertThrows(IllegalArgumentException.class, () -> template.bind(Map.of()));
+    }
+
+    @Test
+    void keepsUnsatisfiableQuery() {
+        QueryTemplate template = QueryBuilder.builder().scalar("status").is("status", 1).is("status", 2).compile();
+
+        assertTrue(UnsatisfiableQuery.is(template.bind(Map.of())));
+    }
+}
@@ -0,0 +1,32 @@
+package tech.aomi.spring.data.mongo.repository;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortedMergeTest {
+
+    @Test
+    void comparesLargeNumbersWithoutTruncation() {
+        assertTrue(SortedMerge.compareValues(BigInteger.ONE.shiftLeft(70), BigInteger.ONE) > 0);
+        assertTrue(SortedMerge.compareValues(1, 1.5) < 0);
+        assertEquals(0, SortedMerge.compareValues(2L, new Decimal128(2)));
+        assertTrue(SortedMerge.compareValues(Decimal128.POSITIVE_INFINITY, 1) > 0);
+    }
+
+    @Test
+    void mergesSortedSources() {
+        List<Document> a = List.of(new Document("n", 1), new Document("n", 4));
+        List<Document> b = List.of(new Document("n", 2), new Document("n", 3));
+
+        List<Document> merged = SortedMerge.merge(List.of(a, b), new Document("n", 1), 1, 2);
+
+        assertEquals(List.of(new Document("n", 2), new Document("n", 3)), merged);
+    }
+}